@@ -0,0 +1,388 @@
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * BoardHash.java keeps a Zobrist hash of a board up to date as its cells change, along with the hash of each of the
+ * board's symmetric variants. A square board has 8 symmetries (rotations and reflections) and any other board has 4
+ * (the identity, both reflections and the half turn). Because the hash of every variant is maintained, the canonical
+ * hash, the smallest of them, is available after each move without rescanning the board, so equivalent positions can
+ * share cache entries in simulation, analysis and search.
+ *
+ * <p>Each cell is hashed by its exponent code (see GameEngine.toExponent()), and an empty cell contributes nothing, so
+ * the empty board hashes to 0. The random keys are derived from the board size alone, so the same position always has
+ * the same hash, in any engine and in any run.
+ *
+ * <p>The full group only says that two boards look alike, not that they play alike. The rules of GameLogic are not
+ * symmetric: a LEFT move allows a new tile only after a merge while the other directions allow one after any movement,
+ * and a composite diagonal move slides vertically before horizontally. Every transform that turns LEFT into another
+ * direction (FLIP_HORIZONTAL, ROTATE_180 and the four that swap rows with columns) can change whether a tile is placed
+ * after a move. Only IDENTITY and FLIP_VERTICAL keep every move's result, so searches that merge positions should use
+ * MOVE_PRESERVING_TRANSFORMS with getCanonicalHash(int[]) and canonicalTransform(int[][], int[]).
+ */
+public class BoardHash {
+    // Stores the number of exponent codes a cell can hold: 0 for empty and 1 to 31 for the powers of two in an int
+    public static final int NUM_EXPONENTS = 32;
+    // Stores the transform numbers, in the order used by transformCell() and mapDirection()
+    public static final int IDENTITY = 0;
+    public static final int FLIP_HORIZONTAL = 1;
+    public static final int FLIP_VERTICAL = 2;
+    public static final int ROTATE_180 = 3;
+    public static final int TRANSPOSE = 4;
+    public static final int ROTATE_CLOCKWISE = 5;
+    public static final int ROTATE_COUNTERCLOCKWISE = 6;
+    public static final int ANTI_TRANSPOSE = 7;
+    // Stores the transforms under which every move gives the corresponding result, including when a new tile is placed
+    public static final int[] MOVE_PRESERVING_TRANSFORMS = {IDENTITY, FLIP_VERTICAL};
+
+    // Stores the shared tables for every board size that has been hashed, keyed by rows * 65536 + columns
+    private static final Map<Integer, Shape> SHAPES = new ConcurrentHashMap<>();
+
+    // Stores the tables for the size of this board
+    private final Shape shape;
+    // Stores the hash of each symmetric variant of the board, indexed by transform number
+    private final long[] hashes;
+
+    /**
+     * Creates the hash of an empty board with the given size.
+     *
+     * @param rows    The number of rows on the board
+     * @param columns The number of columns on the board
+     */
+    public BoardHash(int rows, int columns) {
+        shape = SHAPES.computeIfAbsent(rows * 65536 + columns, key -> new Shape(rows, columns));
+        hashes = new long[shape.numSymmetries];
+    }
+
+    /**
+     * Returns the number of symmetries of the board: 8 if it is square, 4 if not
+     *
+     * @return An int with the number of symmetries
+     */
+    public int getNumSymmetries() {
+        return shape.numSymmetries;
+    }
+
+    /**
+     * Updates the hashes after a cell changes
+     *
+     * @param index    The index of the cell, row * columns + column
+     * @param oldValue The previous tile value of the cell
+     * @param newValue The new tile value of the cell
+     */
+    public void update(int index, int oldValue, int newValue) {
+        int oldExponent = GameEngine.toExponent(oldValue);
+        int newExponent = GameEngine.toExponent(newValue);
+        // Moves the cell's key out of and back into the hash of every variant, at the cell's position in that variant
+        for (int t = 0; t < hashes.length; t++) {
+            int base = shape.cellMaps[t][index] * NUM_EXPONENTS;
+            hashes[t] ^= shape.keys[base + oldExponent] ^ shape.keys[base + newExponent];
+        }
+    }
+
+    /**
+     * Returns the hash of the board as it is
+     *
+     * @return A long with the Zobrist hash of the board
+     */
+    public long getHash() {
+        return hashes[IDENTITY];
+    }
+
+    /**
+     * Returns the hash of one of the symmetric variants of the board
+     *
+     * @param transform The transform number, less than getNumSymmetries()
+     * @return A long with the Zobrist hash of the variant
+     */
+    public long getHash(int transform) {
+        return hashes[transform];
+    }
+
+    /**
+     * Returns the smallest hash among the symmetric variants of the board, which is the same for every board that is
+     * a rotation or reflection of this one
+     *
+     * @return A long with the canonical hash
+     */
+    public long getCanonicalHash() {
+        long min = hashes[0];
+        for (int t = 1; t < hashes.length; t++) {
+            min = Math.min(min, hashes[t]);
+        }
+        return min;
+    }
+
+    /**
+     * Returns the smallest hash among the variants made by the given transforms, for example
+     * MOVE_PRESERVING_TRANSFORMS to only merge positions that play alike
+     *
+     * @param transforms The transform numbers to consider; those the board does not have are skipped
+     * @return A long with the canonical hash under those transforms
+     */
+    public long getCanonicalHash(int[] transforms) {
+        long min = hashes[IDENTITY];
+        for (int t : transforms) {
+            if (t < hashes.length) {
+                min = Math.min(min, hashes[t]);
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Computes the hash of a board from scratch
+     *
+     * @param board The tile values of the board
+     * @return A long with the Zobrist hash of the board
+     */
+    public static long hashOf(int[][] board) {
+        BoardHash hash = new BoardHash(board.length, board[0].length);
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board[i].length; j++) {
+                hash.update(i * board[i].length + j, 0, board[i][j]);
+            }
+        }
+        return hash.getHash();
+    }
+
+    /**
+     * Returns the number of symmetries of a board with the given size
+     *
+     * @param rows    The number of rows on the board
+     * @param columns The number of columns on the board
+     * @return 8 if the board is square, 4 if not
+     */
+    public static int numSymmetries(int rows, int columns) {
+        return rows == columns ? 8 : 4;
+    }
+
+    /**
+     * Returns where a cell ends up when the board is transformed. The transforms that swap rows and columns
+     * (TRANSPOSE and above) are only valid for square boards.
+     *
+     * @param transform The transform number
+     * @param row       The row of the cell
+     * @param column    The column of the cell
+     * @param rows      The number of rows on the board
+     * @param columns   The number of columns on the board
+     * @return The index of the transformed cell, row * columns + column
+     */
+    public static int transformCell(int transform, int row, int column, int rows, int columns) {
+        int lastRow = rows - 1;
+        int lastColumn = columns - 1;
+        return switch (transform) {
+            case IDENTITY -> row * columns + column;
+            case FLIP_HORIZONTAL -> row * columns + (lastColumn - column);
+            case FLIP_VERTICAL -> (lastRow - row) * columns + column;
+            case ROTATE_180 -> (lastRow - row) * columns + (lastColumn - column);
+            case TRANSPOSE -> column * columns + row;
+            case ROTATE_CLOCKWISE -> column * columns + (lastRow - row);
+            case ROTATE_COUNTERCLOCKWISE -> (lastColumn - column) * columns + row;
+            case ANTI_TRANSPOSE -> (lastColumn - column) * columns + (lastRow - row);
+            default -> throw new IllegalArgumentException("Unknown transform: " + transform);
+        };
+    }
+
+    /**
+     * Returns the direction a move becomes when the board is transformed, so that a move found for a canonical board
+     * can be played on the original one (using the inverse transform). The moved tiles correspond, but whether a new
+     * tile is placed only does for MOVE_PRESERVING_TRANSFORMS (see the class comment).
+     *
+     * @param transform The transform number
+     * @param direction The Direction of the move
+     * @return The Direction of the move on the transformed board
+     */
+    public static Direction mapDirection(int transform, Direction direction) {
+        // Stores the move as a step in rows and columns
+        int dr = direction.getRowStep();
+        int dc = direction.getColumnStep();
+        // Applies the rotation or reflection to the step
+        int newDr = switch (transform) {
+            case IDENTITY, FLIP_HORIZONTAL -> dr;
+            case FLIP_VERTICAL, ROTATE_180 -> -dr;
+            case TRANSPOSE, ROTATE_CLOCKWISE -> dc;
+            case ROTATE_COUNTERCLOCKWISE, ANTI_TRANSPOSE -> -dc;
+            default -> throw new IllegalArgumentException("Unknown transform: " + transform);
+        };
+        int newDc = switch (transform) {
+            case IDENTITY, FLIP_VERTICAL -> dc;
+            case FLIP_HORIZONTAL, ROTATE_180 -> -dc;
+            case TRANSPOSE, ROTATE_COUNTERCLOCKWISE -> dr;
+            case ROTATE_CLOCKWISE, ANTI_TRANSPOSE -> -dr;
+            default -> throw new IllegalArgumentException("Unknown transform: " + transform);
+        };
+        for (Direction candidate : Direction.values()) {
+            if (candidate.getRowStep() == newDr && candidate.getColumnStep() == newDc) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("No direction for step " + newDr + ", " + newDc);
+    }
+
+    /**
+     * Returns the transform that undoes the given one
+     *
+     * @param transform The transform number
+     * @return The number of the inverse transform
+     */
+    public static int inverse(int transform) {
+        // The two quarter turns undo each other; every other transform is its own inverse
+        if (transform == ROTATE_CLOCKWISE) {
+            return ROTATE_COUNTERCLOCKWISE;
+        }
+        if (transform == ROTATE_COUNTERCLOCKWISE) {
+            return ROTATE_CLOCKWISE;
+        }
+        return transform;
+    }
+
+    /**
+     * Returns the transform that turns the board into its canonical variant: the one whose exponent codes, read row
+     * by row, come first. Unlike getCanonicalHash(), the canonical variant is exact and never collides.
+     *
+     * @param board The tile values of the board
+     * @return The transform number of the canonical variant
+     */
+    public static int canonicalTransform(int[][] board) {
+        int rows = board.length;
+        int columns = board[0].length;
+        int best = IDENTITY;
+        for (int t = 1; t < numSymmetries(rows, columns); t++) {
+            if (compareVariants(board, t, best) < 0) {
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the transform, among the given ones, that turns the board into the variant whose exponent codes come
+     * first
+     *
+     * @param board      The tile values of the board
+     * @param transforms The transform numbers to consider, such as MOVE_PRESERVING_TRANSFORMS; those the board does
+     *                   not have are skipped
+     * @return The transform number of the canonical variant under those transforms
+     */
+    public static int canonicalTransform(int[][] board, int[] transforms) {
+        int symmetries = numSymmetries(board.length, board[0].length);
+        int best = IDENTITY;
+        for (int t : transforms) {
+            if (t < symmetries && compareVariants(board, t, best) < 0) {
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the canonical variant of the board, which is the same for every board that is a rotation or reflection
+     * of this one
+     *
+     * @param board The tile values of the board
+     * @return A new int[][] array with the canonical variant
+     */
+    public static int[][] canonicalize(int[][] board) {
+        return transform(board, canonicalTransform(board));
+    }
+
+    /**
+     * Returns the canonical variant of the board under the given transforms
+     *
+     * @param board      The tile values of the board
+     * @param transforms The transform numbers to consider, such as MOVE_PRESERVING_TRANSFORMS
+     * @return A new int[][] array with the canonical variant
+     */
+    public static int[][] canonicalize(int[][] board, int[] transforms) {
+        return transform(board, canonicalTransform(board, transforms));
+    }
+
+    /**
+     * Returns a transformed copy of the board
+     *
+     * @param board     The tile values of the board
+     * @param transform The transform number
+     * @return A new int[][] array with the transformed board
+     */
+    public static int[][] transform(int[][] board, int transform) {
+        int rows = board.length;
+        int columns = board[0].length;
+        int[][] result = new int[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int index = transformCell(transform, i, j, rows, columns);
+                result[index / columns][index % columns] = board[i][j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compares two symmetric variants of a board cell by cell without building them
+     *
+     * @param board The tile values of the board
+     * @param a     The transform number of the first variant
+     * @param b     The transform number of the second variant
+     * @return A negative number if variant a comes first, a positive number if variant b comes first, 0 if equal
+     */
+    private static int compareVariants(int[][] board, int a, int b) {
+        int rows = board.length;
+        int columns = board[0].length;
+        int inverseA = inverse(a);
+        int inverseB = inverse(b);
+        // Walks the cells of both variants in row order, looking each one up in the original board
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int sourceA = transformCell(inverseA, i, j, rows, columns);
+                int sourceB = transformCell(inverseB, i, j, rows, columns);
+                int valueA = board[sourceA / columns][sourceA % columns];
+                int valueB = board[sourceB / columns][sourceB % columns];
+                if (valueA != valueB) {
+                    return Integer.compare(valueA, valueB);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The random keys and cell maps shared by every board of one size.
+     */
+    private static final class Shape {
+        // Stores the number of symmetries of the board
+        private final int numSymmetries;
+        // Stores a random key for every cell and exponent code, at index cell * NUM_EXPONENTS + exponent
+        private final long[] keys;
+        // Stores, for every transform, where each cell ends up
+        private final int[][] cellMaps;
+
+        /**
+         * Creates the tables for a board size.
+         *
+         * @param rows    The number of rows on the board
+         * @param columns The number of columns on the board
+         */
+        Shape(int rows, int columns) {
+            numSymmetries = numSymmetries(rows, columns);
+            int cells = rows * columns;
+            // Seeds the keys from the board size so every engine and every run agrees on them
+            Random random = new Random(0x2048L * 31 + rows * 65536L + columns);
+            keys = new long[cells * NUM_EXPONENTS];
+            for (int cell = 0; cell < cells; cell++) {
+                // Leaves the key of an empty cell at 0 so that empty cells do not change the hash
+                for (int exponent = 1; exponent < NUM_EXPONENTS; exponent++) {
+                    keys[cell * NUM_EXPONENTS + exponent] = random.nextLong();
+                }
+            }
+            cellMaps = new int[numSymmetries][cells];
+            for (int t = 0; t < numSymmetries; t++) {
+                for (int i = 0; i < rows; i++) {
+                    for (int j = 0; j < columns; j++) {
+                        cellMaps[t][i * columns + j] = transformCell(t, i, j, rows, columns);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * BoardShape.java describes which cells of a board can hold tiles, and precomputes the lanes of every direction once
+ * per shape. Cells are numbered row by row (row * columns + column). A lane is a run of playable cells in the order a
+ * move processes them: the first cell is the one the tiles slide towards, and each following cell is one step against
+ * the direction. A blocked cell, or the edge of the board, ends a lane, so tiles never slide through blocked cells.
+ * Diamonds, rings and other non-rectangular boards are rectangles with some cells blocked.
+ *
+ * <p>The lanes of all eight directions are kept in two flat arrays per direction, laneCells and laneStarts, so a move
+ * is one loop over plain int arrays whichever way it goes. The diagonal lanes run along the true diagonals of the
+ * board; GameEngine only uses them when it plays with true diagonal moves.
+ *
+ * <p>BoardHash treats blocked cells as empty, so the canonical hash only means "the same position" when the blocked
+ * cells are symmetric in the same way as the board.
+ */
+public final class BoardShape {
+    // Stores the fully playable shapes that have been created, keyed by rows * 65536 + columns
+    private static final Map<Integer, BoardShape> RECTANGLES = new ConcurrentHashMap<>();
+
+    // Stores the number of rows and columns of the bounding rectangle
+    private final int numRows, numColumns;
+    // Stores if each cell can hold tiles
+    private final boolean[] playable;
+    // Stores the number of playable cells
+    private final int playableCount;
+    // Stores, for each direction code, the cells of every lane one after another
+    private final int[][] laneCells;
+    // Stores, for each direction code, where each lane starts in laneCells, followed by the total number of cells
+    private final int[][] laneStarts;
+
+    /**
+     * Creates a shape and builds its lanes. Use rectangle() or masked() to create one.
+     *
+     * @param rows     The number of rows
+     * @param columns  The number of columns
+     * @param playable If each cell can hold tiles, indexed by row * columns + column
+     */
+    private BoardShape(int rows, int columns, boolean[] playable) {
+        numRows = rows;
+        numColumns = columns;
+        this.playable = playable;
+        int count = 0;
+        for (boolean cell : playable) {
+            count += cell ? 1 : 0;
+        }
+        if (count == 0) {
+            throw new IllegalArgumentException("The board needs at least one playable cell");
+        }
+        playableCount = count;
+        laneCells = new int[Direction.values().length][];
+        laneStarts = new int[Direction.values().length][];
+        for (Direction direction : Direction.values()) {
+            buildLanes(direction);
+        }
+    }
+
+    /**
+     * Returns the shape of a board where every cell is playable. Shapes are shared between boards of the same size.
+     *
+     * @param rows    The number of rows
+     * @param columns The number of columns
+     * @return The BoardShape of the rectangle
+     */
+    public static BoardShape rectangle(int rows, int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("The board needs at least one row and one column");
+        }
+        return RECTANGLES.computeIfAbsent(rows * 65536 + columns, key -> {
+            boolean[] playable = new boolean[rows * columns];
+            Arrays.fill(playable, true);
+            return new BoardShape(rows, columns, playable);
+        });
+    }
+
+    /**
+     * Returns the shape with the given playable cells
+     *
+     * @param playable A rectangular 2D array that is true for the cells that can hold tiles
+     * @return A new BoardShape
+     */
+    public static BoardShape masked(boolean[][] playable) {
+        int rows = playable.length;
+        int columns = rows == 0 ? 0 : playable[0].length;
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("The board needs at least one row and one column");
+        }
+        boolean[] cells = new boolean[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            if (playable[i].length != columns) {
+                throw new IllegalArgumentException("Every row of the mask must have the same length");
+            }
+            System.arraycopy(playable[i], 0, cells, i * columns, columns);
+        }
+        return new BoardShape(rows, columns, cells);
+    }
+
+    /**
+     * Builds the lanes of one direction. Every playable cell whose next cell in the direction is blocked or off the
+     * board starts a lane, which then follows the cells behind it until the next blocked cell or edge.
+     *
+     * @param direction The Direction to build the lanes of
+     */
+    private void buildLanes(Direction direction) {
+        int rowStep = direction.getRowStep();
+        int columnStep = direction.getColumnStep();
+        // Every playable cell is in exactly one lane, so the cells fill the array exactly
+        int[] cells = new int[playableCount];
+        int[] starts = new int[playableCount + 1];
+        int laneCount = 0;
+        int cellCount = 0;
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numColumns; j++) {
+                if (!isPlayable(i, j) || isPlayable(i + rowStep, j + columnStep)) {
+                    continue;
+                }
+                starts[laneCount++] = cellCount;
+                for (int row = i, column = j; isPlayable(row, column); row -= rowStep, column -= columnStep) {
+                    cells[cellCount++] = row * numColumns + column;
+                }
+            }
+        }
+        starts[laneCount] = cellCount;
+        laneCells[direction.getCode()] = cells;
+        laneStarts[direction.getCode()] = Arrays.copyOf(starts, laneCount + 1);
+    }
+
+    /**
+     * Returns the number of rows of the bounding rectangle
+     *
+     * @return An int with the number of rows
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Returns the number of columns of the bounding rectangle
+     *
+     * @return An int with the number of columns
+     */
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    /**
+     * Returns the number of cells that can hold tiles
+     *
+     * @return An int with the number of playable cells
+     */
+    public int getPlayableCount() {
+        return playableCount;
+    }
+
+    /**
+     * Returns true if every cell can hold tiles
+     *
+     * @return true for a plain rectangle, false if any cell is blocked
+     */
+    public boolean isRectangle() {
+        return playableCount == playable.length;
+    }
+
+    /**
+     * Returns if a cell can hold tiles
+     *
+     * @param index The index of the cell, row * columns + column
+     * @return true if the cell is playable, false if it is blocked
+     */
+    public boolean isPlayable(int index) {
+        return playable[index];
+    }
+
+    /**
+     * Returns if a cell can hold tiles, treating cells off the board as blocked
+     *
+     * @param row    The row of the cell
+     * @param column The column of the cell
+     * @return true if the cell is on the board and playable, false if not
+     */
+    public boolean isPlayable(int row, int column) {
+        return row >= 0 && row < numRows && column >= 0 && column < numColumns && playable[row * numColumns + column];
+    }
+
+    /**
+     * Returns the cells of every lane of a direction, one lane after another. The array is shared, so it must not be
+     * modified.
+     *
+     * @param direction The Direction of the lanes
+     * @return An int[] array of cell indices
+     */
+    public int[] getLaneCells(Direction direction) {
+        return laneCells[direction.getCode()];
+    }
+
+    /**
+     * Returns where each lane of a direction starts in getLaneCells(), followed by the total number of cells, so lane
+     * l covers positions starts[l] to starts[l + 1] - 1. The array is shared, so it must not be modified.
+     *
+     * @param direction The Direction of the lanes
+     * @return An int[] array with one more entry than there are lanes
+     */
+    public int[] getLaneStarts(Direction direction) {
+        return laneStarts[direction.getCode()];
+    }
+
+    /**
+     * Returns the length of the longest lane in any direction
+     *
+     * @return An int with the longest lane length
+     */
+    public int getMaxLaneLength() {
+        int longest = 0;
+        for (int[] starts : laneStarts) {
+            for (int l = 0; l + 1 < starts.length; l++) {
+                longest = Math.max(longest, starts[l + 1] - starts[l]);
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Returns true if the other object is a shape with the same size and the same playable cells
+     *
+     * @param other The object to compare with
+     * @return true if the shapes are the same, false if not
+     */
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof BoardShape shape && shape.numRows == numRows
+                && shape.numColumns == numColumns && Arrays.equals(shape.playable, playable);
+    }
+
+    /**
+     * Returns a hash code that agrees with equals()
+     *
+     * @return An int hash code
+     */
+    @Override
+    public int hashCode() {
+        return (numRows * 65536 + numColumns) * 31 + Arrays.hashCode(playable);
+    }
+}
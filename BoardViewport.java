@@ -0,0 +1,408 @@
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.geometry.Rectangle2D;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.input.ZoomEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import javafx.stage.Screen;
+
+import java.util.Arrays;
+
+/**
+ * BoardViewport.java contains a scrollable, zoomable view of the game board that is used instead of the GridPane of
+ * buttons when the board is too large to fit on the screen. Only the cells that are currently visible are drawn, onto a
+ * single Canvas, so the cost of a frame depends on the size of the window rather than the size of the board. A minimap
+ * in the top-right corner shows an overview of the whole board and the region that is currently visible.
+ */
+public class BoardViewport extends Pane {
+    // Stores the default size of a cell in pixels, matching the 50 x 50 buttons of the GridPane game board
+    private static final double DEFAULT_CELL_SIZE = 50;
+    // Stores the smallest size of a cell in pixels, which bounds the number of cells drawn per frame
+    private static final double MIN_CELL_SIZE = 8;
+    // Stores the largest size of a cell in pixels
+    private static final double MAX_CELL_SIZE = 120;
+    // Stores the cell size below which cells are drawn as plain squares without borders or text
+    private static final double DETAIL_CELL_SIZE = 16;
+    // Stores the length of the longest side of the minimap in pixels
+    private static final double MINIMAP_SIZE = 150;
+    // Stores the distance between the minimap and the edges of the viewport in pixels
+    private static final double MINIMAP_MARGIN = 10;
+    // Stores the fraction of the screen that the viewport may take up by default
+    private static final double SCREEN_FRACTION = 0.8;
+    // Stores how far the mouse has to move while pressed before a click turns into a drag
+    private static final double DRAG_THRESHOLD = 5;
+    // Stores the factor the cell size is multiplied or divided by for each scroll wheel step
+    private static final double ZOOM_STEP = 1.1;
+    // Stores the color of an empty cell, then one color per exponent up to 2^12, so that drawing allocates no colors
+    private static final Color[] TILE_COLORS = new Color[14];
+    // Stores the border color of a detailed cell
+    private static final Color BORDER_COLOR = Color.rgb(180, 180, 180);
+    // Stores the text of each power of two, so that drawing a label allocates no strings
+    private static final String[] POWER_LABELS = new String[31];
+
+    static {
+        TILE_COLORS[0] = Color.rgb(230, 230, 230);
+        // Tiles are powers of two, so the exponent picks a step along a warm color ramp
+        for (int exponent = 0; exponent <= 12; exponent++) {
+            TILE_COLORS[exponent + 1] = Color.hsb(50 - exponent * 4, 0.2 + exponent * 0.06, 0.97 - exponent * 0.02);
+        }
+        for (int exponent = 0; exponent < POWER_LABELS.length; exponent++) {
+            POWER_LABELS[exponent] = String.valueOf(1 << exponent);
+        }
+    }
+
+    // Stores the number of rows on the board
+    private final int numRows;
+    // Stores the number of columns on the board
+    private final int numColumns;
+    // Stores the Canvas that the visible cells are drawn onto
+    private final Canvas boardCanvas = new Canvas();
+    // Stores the Canvas that the minimap is drawn onto
+    private final Canvas minimapCanvas;
+    // Stores the image of the whole board shown in the minimap, rebuilt only when the board changes
+    private final WritableImage minimapImage;
+    // Stores the number of minimap pixels per cell
+    private final double minimapScale;
+    // Stores the current size of a cell in pixels
+    private double cellSize = DEFAULT_CELL_SIZE;
+    // Stores the horizontal position of the board, in pixels, at the left edge of the viewport
+    private double offsetX;
+    // Stores the vertical position of the board, in pixels, at the top edge of the viewport
+    private double offsetY;
+    // Stores where the mouse was pressed and the offsets at that time, used for dragging
+    private double pressX, pressY, pressOffsetX, pressOffsetY;
+    // Stores if the current mouse press has moved far enough to be a drag rather than a click
+    private boolean dragging;
+    // Stores the label font for each text length at the cell size fonts were last made for
+    private final Font[] labelFonts = new Font[12];
+    private double labelFontCellSize;
+
+    /**
+     * Creates a viewport for a board with the given number of rows and columns.
+     *
+     * @param rows    The number of rows on the board
+     * @param columns The number of columns on the board
+     */
+    public BoardViewport(int rows, int columns) {
+        numRows = rows;
+        numColumns = columns;
+        // Sizes the minimap so that the longest side of the board fills MINIMAP_SIZE pixels
+        minimapScale = MINIMAP_SIZE / Math.max(rows, columns);
+        int minimapWidth = Math.max(1, (int) Math.ceil(columns * minimapScale));
+        int minimapHeight = Math.max(1, (int) Math.ceil(rows * minimapScale));
+        minimapImage = new WritableImage(minimapWidth, minimapHeight);
+        minimapCanvas = new Canvas(minimapWidth, minimapHeight);
+        getChildren().addAll(boardCanvas, minimapCanvas);
+        // Sizes the viewport to the board, but never larger than a fraction of the screen
+        Rectangle2D screen = Screen.getPrimary().getVisualBounds();
+        setPrefSize(Math.min(columns * DEFAULT_CELL_SIZE, screen.getWidth() * SCREEN_FRACTION),
+                Math.min(rows * DEFAULT_CELL_SIZE, screen.getHeight() * SCREEN_FRACTION));
+        setFocusTraversable(false);
+        // Pans with the scroll wheel and zooms with the scroll wheel while control is held
+        setOnScroll(this::handleScroll);
+        // Zooms with touchpad pinch gestures
+        setOnZoom(this::handleZoom);
+        setOnMousePressed(this::handleMousePressed);
+        setOnMouseDragged(this::handleMouseDragged);
+        setOnMouseReleased(this::handleMouseReleased);
+        // Centers the viewport on the point of the minimap that is clicked or dragged over
+        minimapCanvas.setOnMousePressed(this::handleMinimapMouse);
+        minimapCanvas.setOnMouseDragged(this::handleMinimapMouse);
+        minimapCanvas.setOnMouseReleased(MouseEvent::consume);
+        refresh();
+    }
+
+    /**
+     * Checks if a board with the given number of rows and columns is too large to show as a GridPane of buttons.
+     *
+     * @param rows    The number of rows on the board
+     * @param columns The number of columns on the board
+     * @return true if the board does not fit on the screen, false if it does
+     */
+    public static boolean exceedsScreen(int rows, int columns) {
+        Rectangle2D screen = Screen.getPrimary().getVisualBounds();
+        return columns * DEFAULT_CELL_SIZE > screen.getWidth() * SCREEN_FRACTION
+                || rows * DEFAULT_CELL_SIZE > screen.getHeight() * SCREEN_FRACTION;
+    }
+
+    /**
+     * Returns the current size of a cell in pixels
+     *
+     * @return A double with the size of a cell in pixels
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Returns the color used to draw a tile with the given value
+     *
+     * @param value The value of the tile, or 0 for an empty cell
+     * @return The Color of the tile
+     */
+    public static Color getTileColor(int value) {
+        if (value == 0) {
+            return TILE_COLORS[0];
+        }
+        return TILE_COLORS[Math.min(Integer.numberOfTrailingZeros(value), 12) + 1];
+    }
+
+    /**
+     * Returns the text drawn on a tile
+     *
+     * @param value The value of the tile
+     * @return The value as a String, shared for powers of two
+     */
+    private static String getTileLabel(int value) {
+        return value > 0 && Integer.bitCount(value) == 1 ? POWER_LABELS[Integer.numberOfTrailingZeros(value)] : String.valueOf(value);
+    }
+
+    /**
+     * Returns the font for a label of the given length at the current cell size, making the fonts again only when the
+     * cell size has changed
+     *
+     * @param length The number of characters in the label
+     * @return The Font to draw the label with
+     */
+    private Font getLabelFont(int length) {
+        if (labelFontCellSize != cellSize) {
+            Arrays.fill(labelFonts, null);
+            labelFontCellSize = cellSize;
+        }
+        int slot = Math.min(length, labelFonts.length - 1);
+        if (labelFonts[slot] == null) {
+            // Shrinks the font for long numbers so they stay inside the cell
+            labelFonts[slot] = Font.font(cellSize * 0.3 * Math.min(1, 3.0 / slot));
+        }
+        return labelFonts[slot];
+    }
+
+    /**
+     * Redraws the viewport and rebuilds the minimap after the board has changed.
+     */
+    public void refresh() {
+        // Redraws the minimap image by sampling one cell per minimap pixel
+        PixelWriter writer = minimapImage.getPixelWriter();
+        int[][] board = SlideGameUI.GameLogic.getLogicArray();
+        for (int y = 0; y < (int) minimapImage.getHeight(); y++) {
+            int row = Math.min(numRows - 1, (int) (y / minimapScale));
+            for (int x = 0; x < (int) minimapImage.getWidth(); x++) {
+                int column = Math.min(numColumns - 1, (int) (x / minimapScale));
+                writer.setColor(x, y, getTileColor(board[row][column]));
+            }
+        }
+        redraw();
+    }
+
+    /**
+     * Lays out the board Canvas to fill the viewport and places the minimap in the top-right corner.
+     */
+    @Override
+    protected void layoutChildren() {
+        boardCanvas.setWidth(getWidth());
+        boardCanvas.setHeight(getHeight());
+        minimapCanvas.relocate(getWidth() - minimapCanvas.getWidth() - MINIMAP_MARGIN, MINIMAP_MARGIN);
+        // Hides the minimap when the whole board is already visible
+        minimapCanvas.setVisible(numColumns * cellSize > getWidth() || numRows * cellSize > getHeight());
+        clampView();
+        redraw();
+    }
+
+    /**
+     * Draws the visible cells onto the board Canvas and the visible region onto the minimap.
+     */
+    private void redraw() {
+        GraphicsContext gc = boardCanvas.getGraphicsContext2D();
+        double width = boardCanvas.getWidth();
+        double height = boardCanvas.getHeight();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, width, height);
+        int[][] board = SlideGameUI.GameLogic.getLogicArray();
+        // Stores the range of rows and columns that overlap the viewport
+        int firstRow = Math.max(0, (int) (offsetY / cellSize));
+        int lastRow = Math.min(numRows - 1, (int) ((offsetY + height) / cellSize));
+        int firstColumn = Math.max(0, (int) (offsetX / cellSize));
+        int lastColumn = Math.min(numColumns - 1, (int) ((offsetX + width) / cellSize));
+        boolean detailed = cellSize >= DETAIL_CELL_SIZE;
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        // Loops through the visible cells only, so the work per frame does not grow with the board
+        for (int i = firstRow; i <= lastRow; i++) {
+            double y = i * cellSize - offsetY;
+            for (int j = firstColumn; j <= lastColumn; j++) {
+                double x = j * cellSize - offsetX;
+                int value = board[i][j];
+                gc.setFill(getTileColor(value));
+                if (!detailed) {
+                    gc.fillRect(x, y, cellSize - 1, cellSize - 1);
+                    continue;
+                }
+                gc.fillRoundRect(x + 1, y + 1, cellSize - 2, cellSize - 2, 6, 6);
+                gc.setStroke(BORDER_COLOR);
+                gc.strokeRoundRect(x + 1, y + 1, cellSize - 2, cellSize - 2, 6, 6);
+                if (value != 0) {
+                    String text = getTileLabel(value);
+                    gc.setFont(getLabelFont(text.length()));
+                    gc.setFill(Color.BLACK);
+                    gc.fillText(text, x + cellSize / 2, y + cellSize / 2);
+                }
+            }
+        }
+        drawMinimap();
+    }
+
+    /**
+     * Draws the minimap image and a rectangle around the region of the board that is currently visible.
+     */
+    private void drawMinimap() {
+        GraphicsContext gc = minimapCanvas.getGraphicsContext2D();
+        gc.drawImage(minimapImage, 0, 0);
+        double scale = minimapScale / cellSize;
+        gc.setStroke(Color.RED);
+        gc.setLineWidth(1.5);
+        gc.strokeRect(offsetX * scale, offsetY * scale,
+                Math.min(getWidth(), numColumns * cellSize) * scale, Math.min(getHeight(), numRows * cellSize) * scale);
+    }
+
+    /**
+     * Keeps the cell size and offsets within the bounds of the board.
+     */
+    private void clampView() {
+        // Does not zoom out further than the size at which the whole board fits in the viewport
+        double fitSize = Math.min(getWidth() / numColumns, getHeight() / numRows);
+        double minSize = Math.min(DEFAULT_CELL_SIZE, Math.max(MIN_CELL_SIZE, fitSize));
+        cellSize = Math.max(minSize, Math.min(MAX_CELL_SIZE, cellSize));
+        offsetX = Math.max(0, Math.min(offsetX, numColumns * cellSize - getWidth()));
+        offsetY = Math.max(0, Math.min(offsetY, numRows * cellSize - getHeight()));
+    }
+
+    /**
+     * Moves the viewport by the given number of pixels.
+     *
+     * @param dx The number of pixels to move right
+     * @param dy The number of pixels to move down
+     */
+    public void pan(double dx, double dy) {
+        offsetX += dx;
+        offsetY += dy;
+        clampView();
+        redraw();
+    }
+
+    /**
+     * Scales the cell size by the given factor while keeping the board point under (x, y) in place.
+     *
+     * @param factor The factor to multiply the cell size by
+     * @param x      The horizontal position in the viewport to zoom around
+     * @param y      The vertical position in the viewport to zoom around
+     */
+    public void zoom(double factor, double x, double y) {
+        // Stores the board position (in cells) under the zoom point, before the cell size changes
+        double column = (offsetX + x) / cellSize;
+        double row = (offsetY + y) / cellSize;
+        cellSize *= factor;
+        clampView();
+        offsetX = column * cellSize - x;
+        offsetY = row * cellSize - y;
+        // Re-runs layout since the minimap may need to be shown or hidden at the new zoom level
+        requestLayout();
+        clampView();
+        redraw();
+    }
+
+    /**
+     * Pans or zooms the viewport depending on if control is held while scrolling
+     *
+     * @param e The ScrollEvent from the scroll wheel or touchpad
+     */
+    private void handleScroll(ScrollEvent e) {
+        if (e.isControlDown()) {
+            zoom(e.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP, e.getX(), e.getY());
+        } else {
+            pan(-e.getDeltaX(), -e.getDeltaY());
+        }
+        e.consume();
+    }
+
+    /**
+     * Zooms the viewport following a touchpad pinch gesture
+     *
+     * @param e The ZoomEvent from the touchpad
+     */
+    private void handleZoom(ZoomEvent e) {
+        zoom(e.getZoomFactor(), e.getX(), e.getY());
+        e.consume();
+    }
+
+    /**
+     * Records where the mouse was pressed so that a drag can pan the viewport
+     *
+     * @param e The MouseEvent for the press
+     */
+    private void handleMousePressed(MouseEvent e) {
+        pressX = e.getX();
+        pressY = e.getY();
+        pressOffsetX = offsetX;
+        pressOffsetY = offsetY;
+        dragging = false;
+    }
+
+    /**
+     * Pans the viewport along with the mouse once it has moved far enough from where it was pressed
+     *
+     * @param e The MouseEvent for the drag
+     */
+    private void handleMouseDragged(MouseEvent e) {
+        if (!dragging && Math.hypot(e.getX() - pressX, e.getY() - pressY) < DRAG_THRESHOLD) {
+            return;
+        }
+        dragging = true;
+        offsetX = pressOffsetX - (e.getX() - pressX);
+        offsetY = pressOffsetY - (e.getY() - pressY);
+        clampView();
+        redraw();
+    }
+
+    /**
+     * Performs the shift assigned to the clicked cell, the same way the buttons on the GridPane board do
+     *
+     * @param e The MouseEvent for the release
+     */
+    private void handleMouseReleased(MouseEvent e) {
+        if (dragging || e.getButton() != MouseButton.PRIMARY) {
+            return;
+        }
+        int row = (int) ((offsetY + e.getY()) / cellSize);
+        int column = (int) ((offsetX + e.getX()) / cellSize);
+        if (row < 0 || row >= numRows || column < 0 || column >= numColumns) {
+            return;
+        }
+        EventHandler<ActionEvent> action = SlideGameUI.getShiftActionForCell(row, column);
+        if (action != null) {
+            action.handle(new ActionEvent());
+        }
+    }
+
+    /**
+     * Centers the viewport on the board position under the mouse on the minimap
+     *
+     * @param e The MouseEvent from the minimap
+     */
+    private void handleMinimapMouse(MouseEvent e) {
+        offsetX = e.getX() / minimapScale * cellSize - getWidth() / 2;
+        offsetY = e.getY() / minimapScale * cellSize - getHeight() / 2;
+        clampView();
+        redraw();
+        e.consume();
+    }
+}
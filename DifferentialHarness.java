@@ -0,0 +1,577 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DifferentialHarness.java checks that GameEngine plays exactly like the legacy SlideGameUI.GameLogic. It generates
+ * random boards and move sequences from a seed, plays each one on both, and compares the board, canSelectRandomInt and
+ * isGameOver() after every move, which catches the quirks that a faster engine has to keep (mergeLeft() only allowing
+ * a new tile after a merge, mergeUp() comparing empty cells, the diagonal moves being composites).
+ *
+ * <p>GameLogic keeps its board in static fields, so each worker thread loads its own copy of the class through a
+ * separate class loader; this lets the cases run in parallel on every core. New tiles are placed by the harness, at
+ * cells chosen from the case's seed, so that both sides see the same ones.
+ *
+ * <p>When a case fails, the harness shrinks it (fewer moves, fewer and smaller tiles, fewer rows and columns) while it
+ * keeps failing, and prints the smallest failing case it found.
+ *
+ * <p>Usage: {@code java DifferentialHarness [cases] [seed] [threads] [maxSize] [movesPerCase]}
+ */
+public class DifferentialHarness {
+    // Stores the number of cases each worker claims at a time
+    private static final int BATCH_SIZE = 1000;
+    // Stores the largest exponent code of the tiles on a generated board, kept low so that merges are common
+    private static final int MAX_GENERATED_EXPONENT = 4;
+
+    // Stores the stream for the harness's own output, since System.out is silenced while GameLogic prints its boards
+    private static PrintStream console = System.out;
+
+    /**
+     * Runs the harness from the command line
+     *
+     * @param args The number of cases, seed, number of threads, largest board size and moves per case, all optional
+     * @throws Exception if a worker fails
+     */
+    public static void main(String[] args) throws Exception {
+        long cases = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 2048;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int maxSize = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+        int movesPerCase = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+        console = System.out;
+        // Silences GameLogic.displayGameBoard(), which prints the board after every move
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long start = System.nanoTime();
+        TestCase failure;
+        String report = null;
+        try {
+            failure = run(cases, seed, threads, maxSize, movesPerCase);
+            if (failure != null) {
+                report = failure.describe(new LegacyLogic());
+            }
+        } finally {
+            System.setOut(console);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (failure == null) {
+            console.printf("%d cases passed in %.1fs (%.0f cases/s)%n", cases, seconds, cases / seconds);
+            return;
+        }
+        console.println("Mismatch found in case " + failure.index + ", shrunk to:");
+        console.println(report);
+        System.exit(1);
+    }
+
+    /**
+     * Runs the cases on a pool of worker threads
+     *
+     * @param cases        The number of cases to run
+     * @param seed         The seed that every case is generated from
+     * @param threads      The number of worker threads
+     * @param maxSize      The largest number of rows or columns on a generated board
+     * @param movesPerCase The number of moves in each case
+     * @return The shrunk first failing case, or null if every case passed
+     * @throws Exception if a worker fails
+     */
+    public static TestCase run(long cases, long seed, int threads, int maxSize, int movesPerCase) throws Exception {
+        AtomicLong nextBatch = new AtomicLong();
+        // Stores the index of the first failing case found so far, so workers stop claiming batches past it
+        AtomicLong firstFailure = new AtomicLong(Long.MAX_VALUE);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                LegacyLogic legacy = new LegacyLogic();
+                while (true) {
+                    long first = nextBatch.getAndAdd(BATCH_SIZE);
+                    if (first >= cases || first > firstFailure.get()) {
+                        return null;
+                    }
+                    for (long index = first; index < Math.min(cases, first + BATCH_SIZE); index++) {
+                        TestCase testCase = TestCase.generate(seed, index, maxSize, movesPerCase);
+                        if (testCase.firstMismatch(legacy) >= 0) {
+                            firstFailure.accumulateAndGet(index, Math::min);
+                            break;
+                        }
+                    }
+                }
+            }));
+        }
+        pool.shutdown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        if (firstFailure.get() == Long.MAX_VALUE) {
+            return null;
+        }
+        LegacyLogic legacy = new LegacyLogic();
+        return TestCase.generate(seed, firstFailure.get(), maxSize, movesPerCase).shrink(legacy);
+    }
+
+    /**
+     * A starting board, a list of moves and the seed for the new tiles placed after the moves.
+     */
+    public static final class TestCase {
+        // Stores the index of the case it was generated as
+        private final long index;
+        // Stores the starting board
+        private final int[][] board;
+        // Stores the direction codes of the moves
+        private final int[] moves;
+        // Stores the seed used to choose where new tiles go
+        private final long spawnSeed;
+
+        /**
+         * Creates a case.
+         *
+         * @param index     The index of the case it was generated as
+         * @param board     The starting board
+         * @param moves     The direction codes of the moves
+         * @param spawnSeed The seed used to choose where new tiles go
+         */
+        TestCase(long index, int[][] board, int[] moves, long spawnSeed) {
+            this.index = index;
+            this.board = board;
+            this.moves = moves;
+            this.spawnSeed = spawnSeed;
+        }
+
+        /**
+         * Generates the case with the given index, which depends only on the seed and the index
+         *
+         * @param seed         The seed of the run
+         * @param index        The index of the case
+         * @param maxSize      The largest number of rows or columns
+         * @param movesPerCase The number of moves
+         * @return The generated TestCase
+         */
+        static TestCase generate(long seed, long index, int maxSize, int movesPerCase) {
+            SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+            int rows = 2 + random.nextInt(Math.max(1, maxSize - 1));
+            int columns = 2 + random.nextInt(Math.max(1, maxSize - 1));
+            // Fills a random share of the cells with small powers of two
+            double density = random.nextDouble();
+            int[][] board = new int[rows][columns];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    if (random.nextDouble() < density) {
+                        board[i][j] = GameEngine.fromExponent(1 + random.nextInt(MAX_GENERATED_EXPONENT));
+                    }
+                }
+            }
+            int[] moves = new int[movesPerCase];
+            for (int m = 0; m < movesPerCase; m++) {
+                moves[m] = random.nextInt(Direction.values().length);
+            }
+            return new TestCase(index, board, moves, random.nextLong());
+        }
+
+        /**
+         * Plays the case on both sides and returns the first move after which they differ
+         *
+         * @param legacy The worker's copy of GameLogic
+         * @return The index of the first mismatching move, or -1 if both sides agree throughout
+         */
+        int firstMismatch(LegacyLogic legacy) {
+            int rows = board.length;
+            int columns = board[0].length;
+            GameEngine engine = new GameEngine(rows, columns, 0);
+            engine.setBoard(board);
+            legacy.start(board);
+            SplittableRandom spawns = new SplittableRandom(spawnSeed);
+            for (int m = 0; m < moves.length; m++) {
+                Direction direction = Direction.fromCode(moves[m]);
+                engine.setCanSelectRandomInt(false);
+                legacy.setCanSelectRandomInt(false);
+                engine.slide(direction);
+                legacy.move(direction);
+                int[][] legacyBoard = legacy.getBoard();
+                if (!Arrays.deepEquals(engine.copyBoard(), legacyBoard)
+                        || engine.getCanSelectRandomInt() != legacy.getCanSelectRandomInt()
+                        || engine.isGameOver() != legacy.isGameOver()) {
+                    return m;
+                }
+                // Places the same new tile on both sides, the way SlideGameUI.updateGUI() would
+                if (engine.getCanSelectRandomInt()) {
+                    int cell = chooseSpawn(legacyBoard, spawns);
+                    if (cell >= 0) {
+                        legacyBoard[cell / columns][cell % columns] = 1;
+                        engine.setCell(cell / columns, cell % columns, 1);
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Makes the case smaller for as long as it keeps failing
+         *
+         * @param legacy A copy of GameLogic
+         * @return The smallest failing TestCase found
+         */
+        TestCase shrink(LegacyLogic legacy) {
+            TestCase current = this;
+            boolean progress = true;
+            while (progress) {
+                progress = false;
+                // Drops the moves after the first mismatch
+                int mismatch = current.firstMismatch(legacy);
+                if (mismatch + 1 < current.moves.length) {
+                    current = current.withMoves(Arrays.copyOf(current.moves, mismatch + 1));
+                    progress = true;
+                }
+                for (TestCase candidate : current.smallerCases()) {
+                    if (candidate.firstMismatch(legacy) >= 0) {
+                        current = candidate;
+                        progress = true;
+                        break;
+                    }
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Returns the cases that are one step smaller than this one
+         *
+         * @return A list of smaller TestCases, which may or may not fail
+         */
+        private List<TestCase> smallerCases() {
+            List<TestCase> candidates = new ArrayList<>();
+            int rows = board.length;
+            int columns = board[0].length;
+            // Removes one move
+            for (int m = 0; m < moves.length && moves.length > 1; m++) {
+                int[] fewer = new int[moves.length - 1];
+                System.arraycopy(moves, 0, fewer, 0, m);
+                System.arraycopy(moves, m + 1, fewer, m, moves.length - m - 1);
+                candidates.add(withMoves(fewer));
+            }
+            // Removes one row or one column, keeping at least the 2 x 2 board that SlideGameUI allows
+            for (int i = 0; i < rows && rows > 2; i++) {
+                int[][] smaller = new int[rows - 1][];
+                for (int r = 0, k = 0; r < rows; r++) {
+                    if (r != i) {
+                        smaller[k++] = board[r].clone();
+                    }
+                }
+                candidates.add(withBoard(smaller));
+            }
+            for (int j = 0; j < columns && columns > 2; j++) {
+                int[][] smaller = new int[rows][columns - 1];
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0, k = 0; c < columns; c++) {
+                        if (c != j) {
+                            smaller[r][k++] = board[r][c];
+                        }
+                    }
+                }
+                candidates.add(withBoard(smaller));
+            }
+            // Empties one tile, or halves it
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    if (board[i][j] != 0) {
+                        candidates.add(withCell(i, j, 0));
+                    }
+                    if (board[i][j] > 1) {
+                        candidates.add(withCell(i, j, board[i][j] / 2));
+                    }
+                }
+            }
+            return candidates;
+        }
+
+        /**
+         * Returns a copy of this case with other moves
+         *
+         * @param newMoves The direction codes of the moves
+         * @return A new TestCase
+         */
+        private TestCase withMoves(int[] newMoves) {
+            return new TestCase(index, board, newMoves, spawnSeed);
+        }
+
+        /**
+         * Returns a copy of this case with another starting board
+         *
+         * @param newBoard The starting board
+         * @return A new TestCase
+         */
+        private TestCase withBoard(int[][] newBoard) {
+            return new TestCase(index, newBoard, moves, spawnSeed);
+        }
+
+        /**
+         * Returns a copy of this case with one cell of the starting board changed
+         *
+         * @param row    The row of the cell
+         * @param column The column of the cell
+         * @param value  The new value of the cell
+         * @return A new TestCase
+         */
+        private TestCase withCell(int row, int column, int value) {
+            int[][] newBoard = new int[board.length][];
+            for (int i = 0; i < board.length; i++) {
+                newBoard[i] = board[i].clone();
+            }
+            newBoard[row][column] = value;
+            return withBoard(newBoard);
+        }
+
+        /**
+         * Describes the case and how the two sides differ on it
+         *
+         * @param legacy A copy of GameLogic
+         * @return A String with the starting board, the moves and both results of the mismatching move
+         */
+        String describe(LegacyLogic legacy) {
+            StringBuilder text = new StringBuilder();
+            text.append("starting board:\n").append(format(board));
+            text.append("moves:");
+            for (int move : moves) {
+                text.append(' ').append(Direction.fromCode(move));
+            }
+            int mismatch = firstMismatch(legacy);
+            if (mismatch < 0) {
+                return text.append("\nno mismatch\n").toString();
+            }
+            text.append("\nfirst mismatch after move ").append(mismatch + 1).append('\n');
+            // Replays everything before the mismatching move, then plays it on both sides
+            TestCase before = withMoves(Arrays.copyOf(moves, Math.max(0, mismatch)));
+            GameEngine engine = new GameEngine(board.length, board[0].length, 0);
+            before.replayOnEngine(engine);
+            legacy.start(engine.copyBoard());
+            Direction direction = Direction.fromCode(moves[mismatch]);
+            engine.setCanSelectRandomInt(false);
+            legacy.setCanSelectRandomInt(false);
+            engine.slide(direction);
+            legacy.move(direction);
+            text.append("GameLogic (canSelectRandomInt=").append(legacy.getCanSelectRandomInt())
+                    .append(", isGameOver=").append(legacy.isGameOver()).append("):\n").append(format(legacy.getBoard()));
+            text.append("GameEngine (canSelectRandomInt=").append(engine.getCanSelectRandomInt())
+                    .append(", isGameOver=").append(engine.isGameOver()).append("):\n").append(format(engine.copyBoard()));
+            return text.toString();
+        }
+
+        /**
+         * Plays the case on an engine alone, placing new tiles the same way firstMismatch() does
+         *
+         * @param engine A GameEngine with the size of the case's board
+         */
+        private void replayOnEngine(GameEngine engine) {
+            engine.setBoard(board);
+            SplittableRandom spawns = new SplittableRandom(spawnSeed);
+            for (int move : moves) {
+                engine.setCanSelectRandomInt(false);
+                engine.slide(Direction.fromCode(move));
+                if (engine.getCanSelectRandomInt()) {
+                    int cell = chooseSpawn(engine.copyBoard(), spawns);
+                    if (cell >= 0) {
+                        engine.setCell(cell / engine.getNumColumns(), cell % engine.getNumColumns(), 1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Chooses the empty cell that the next new tile goes in
+         *
+         * @param values The tile values of the board
+         * @param spawns The random generator for new tiles
+         * @return The index of the cell, row * columns + column, or -1 if the board is full
+         */
+        private static int chooseSpawn(int[][] values, SplittableRandom spawns) {
+            int empty = 0;
+            for (int[] row : values) {
+                for (int value : row) {
+                    empty += value == 0 ? 1 : 0;
+                }
+            }
+            if (empty == 0) {
+                return -1;
+            }
+            // Counts down to the chosen empty cell in row order
+            int target = spawns.nextInt(empty);
+            for (int i = 0; i < values.length; i++) {
+                for (int j = 0; j < values[i].length; j++) {
+                    if (values[i][j] == 0 && target-- == 0) {
+                        return i * values[i].length + j;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Formats a board the same way GameLogic.displayGameBoard() does
+         *
+         * @param values The tile values of the board
+         * @return A String with one line per row
+         */
+        private static String format(int[][] values) {
+            StringBuilder text = new StringBuilder();
+            for (int[] row : values) {
+                for (int value : row) {
+                    text.append(value).append(' ');
+                }
+                text.append('\n');
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * A private copy of SlideGameUI.GameLogic, loaded by its own class loader so that its static fields are not shared
+     * with other threads.
+     */
+    static final class LegacyLogic {
+        // Stores the handles to the static methods of this copy of GameLogic
+        private final MethodHandle setNumRows, setNumColumns, setLogicArray, getLogicArray;
+        private final MethodHandle setCanSelectRandomInt, getCanSelectRandomInt, isGameOver;
+        // Stores the merge functions, indexed by direction code
+        private final MethodHandle[] moves = new MethodHandle[Direction.values().length];
+
+        /**
+         * Loads a new copy of GameLogic from the class path.
+         *
+         * @throws ReflectiveOperationException if GameLogic or one of its methods cannot be found
+         */
+        LegacyLogic() throws ReflectiveOperationException {
+            // Uses the platform class loader as the parent so that the classes on the class path are loaded again
+            ClassLoader loader = new URLClassLoader(classPath(), ClassLoader.getPlatformClassLoader());
+            Class<?> logic = Class.forName("SlideGameUI$GameLogic", true, loader);
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            setNumRows = lookup.findStatic(logic, "setNumRows", MethodType.methodType(void.class, int.class));
+            setNumColumns = lookup.findStatic(logic, "setNumColumns", MethodType.methodType(void.class, int.class));
+            setLogicArray = lookup.findStatic(logic, "setLogicArray", MethodType.methodType(void.class, int[][].class));
+            getLogicArray = lookup.findStatic(logic, "getLogicArray", MethodType.methodType(int[][].class));
+            setCanSelectRandomInt = lookup.findStatic(logic, "setCanSelectRandomInt", MethodType.methodType(void.class, boolean.class));
+            getCanSelectRandomInt = lookup.findStatic(logic, "getCanSelectRandomInt", MethodType.methodType(boolean.class));
+            isGameOver = lookup.findStatic(logic, "isGameOver", MethodType.methodType(boolean.class));
+            String[] names = {"mergeLeft", "mergeRight", "mergeUp", "mergeDown",
+                    "mergeUpLeft", "mergeUpRight", "mergeDownLeft", "mergeDownRight"};
+            for (Direction direction : Direction.values()) {
+                moves[direction.getCode()] = lookup.findStatic(logic, names[direction.getCode()], MethodType.methodType(void.class));
+            }
+        }
+
+        /**
+         * Returns the entries of the class path as URLs
+         *
+         * @return An array of URLs
+         */
+        private static URL[] classPath() {
+            String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+            URL[] urls = new URL[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                try {
+                    urls[i] = new File(entries[i]).toURI().toURL();
+                } catch (MalformedURLException e) {
+                    throw new IllegalStateException("Invalid class path entry: " + entries[i], e);
+                }
+            }
+            return urls;
+        }
+
+        /**
+         * Sets up this copy of GameLogic with a copy of the given board
+         *
+         * @param board The tile values of the board
+         */
+        void start(int[][] board) {
+            int[][] copy = new int[board.length][];
+            for (int i = 0; i < board.length; i++) {
+                copy[i] = board[i].clone();
+            }
+            try {
+                setNumRows.invokeExact(board.length);
+                setNumColumns.invokeExact(board[0].length);
+                setLogicArray.invokeExact(copy);
+            } catch (Throwable e) {
+                throw new IllegalStateException("GameLogic failed", e);
+            }
+        }
+
+        /**
+         * Calls the merge function for a direction
+         *
+         * @param direction The Direction to slide the tiles in
+         */
+        void move(Direction direction) {
+            try {
+                moves[direction.getCode()].invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("GameLogic failed", e);
+            }
+        }
+
+        /**
+         * Returns the board of this copy of GameLogic, which the caller may change
+         *
+         * @return The int[][] logicArray
+         */
+        int[][] getBoard() {
+            try {
+                return (int[][]) getLogicArray.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("GameLogic failed", e);
+            }
+        }
+
+        /**
+         * Sets canSelectRandomInt of this copy of GameLogic
+         *
+         * @param condition The new value
+         */
+        void setCanSelectRandomInt(boolean condition) {
+            try {
+                setCanSelectRandomInt.invokeExact(condition);
+            } catch (Throwable e) {
+                throw new IllegalStateException("GameLogic failed", e);
+            }
+        }
+
+        /**
+         * Returns canSelectRandomInt of this copy of GameLogic
+         *
+         * @return the boolean canSelectRandomInt
+         */
+        boolean getCanSelectRandomInt() {
+            try {
+                return (boolean) getCanSelectRandomInt.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("GameLogic failed", e);
+            }
+        }
+
+        /**
+         * Returns isGameOver() of this copy of GameLogic
+         *
+         * @return true if no more moves can be made, false if not
+         */
+        boolean isGameOver() {
+            try {
+                return (boolean) isGameOver.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("GameLogic failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Direction.java lists the eight directions the tiles on the board can be slid in, matching the merge functions of
+ * SlideGameUI.GameLogic and the keys bound in SlideGameUI.shiftWithKeyboard().
+ */
+public enum Direction {
+    LEFT(0, -1),
+    RIGHT(0, 1),
+    UP(-1, 0),
+    DOWN(1, 0),
+    UP_LEFT(-1, -1),
+    UP_RIGHT(-1, 1),
+    DOWN_LEFT(1, -1),
+    DOWN_RIGHT(1, 1);
+
+    // Stores the directions in ordinal order, so that codes can be converted back without copying values()
+    private static final Direction[] DIRECTIONS = values();
+
+    // Stores how far a tile moves in rows and in columns for each step in this direction
+    private final int rowStep, columnStep;
+
+    /**
+     * Creates a direction.
+     *
+     * @param rowStep    The change in row per step: -1 up, 1 down, 0 for neither
+     * @param columnStep The change in column per step: -1 left, 1 right, 0 for neither
+     */
+    Direction(int rowStep, int columnStep) {
+        this.rowStep = rowStep;
+        this.columnStep = columnStep;
+    }
+
+    /**
+     * Returns the compact code of this direction, used by the server protocol and exported data
+     *
+     * @return A byte between 0 and 7
+     */
+    public byte getCode() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Returns the direction with the given code
+     *
+     * @param code A code returned by getCode()
+     * @return The Direction with that code
+     * @throws IllegalArgumentException if the code does not belong to a direction
+     */
+    public static Direction fromCode(int code) {
+        if (code < 0 || code >= DIRECTIONS.length) {
+            throw new IllegalArgumentException("Unknown direction code: " + code);
+        }
+        return DIRECTIONS[code];
+    }
+
+    /**
+     * Returns true if this direction is one of the four diagonal directions
+     *
+     * @return true if diagonal, false if horizontal or vertical
+     */
+    public boolean isDiagonal() {
+        return ordinal() >= UP_LEFT.ordinal();
+    }
+
+    /**
+     * Returns the change in row per step in this direction
+     *
+     * @return -1 for up, 1 for down, 0 for neither
+     */
+    public int getRowStep() {
+        return rowStep;
+    }
+
+    /**
+     * Returns the change in column per step in this direction
+     *
+     * @return -1 for left, 1 for right, 0 for neither
+     */
+    public int getColumnStep() {
+        return columnStep;
+    }
+
+    /**
+     * Returns the vertical part of this direction
+     *
+     * @return UP or DOWN, or null for LEFT and RIGHT
+     */
+    public Direction getVertical() {
+        return rowStep < 0 ? UP : rowStep > 0 ? DOWN : null;
+    }
+
+    /**
+     * Returns the horizontal part of this direction
+     *
+     * @return LEFT or RIGHT, or null for UP and DOWN
+     */
+    public Direction getHorizontal() {
+        return columnStep < 0 ? LEFT : columnStep > 0 ? RIGHT : null;
+    }
+}
@@ -0,0 +1,599 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * GameEngine.java contains an independent instance of the slide game rules. Unlike SlideGameUI.GameLogic, which keeps
+ * a single board in static fields, any number of GameEngine objects can be played at the same time, which is what the
+ * GameServer and headless tools need.
+ *
+ * <p>The moves behave the same way as the GameLogic merge functions, including their quirks: sliding left only allows
+ * a new tile when something was merged, the other directions allow one whenever the board moved, and the diagonal
+ * moves are a vertical move followed by a horizontal one. A new tile is placed right after each move that allows one,
+ * the same way SlideGameUI.updateGUI() does after every move.
+ *
+ * <p>The board is a flat array in row order, and its BoardShape holds the lanes of every direction, built once per
+ * shape, so one loop slides the board in any direction. Lanes are slid through the current thread's LaneCache, so
+ * lanes that repeat are looked up rather than recomputed. The shape can block cells, which tiles never enter or pass
+ * through. The diagonal moves can also be played as true diagonals, sliding along the diagonal lanes in one step
+ * instead of the composite of GameLogic.
+ *
+ * <p>How many tiles are placed, and with which values, is set by a SpawnRule; the classic rule places one tile with
+ * the value 1. The empty cells are kept in a list that setCell() updates, so k new tiles are placed in O(k) time with
+ * exactly uniform chances, however full or large the board is.
+ */
+public class GameEngine {
+    // Stores the number of rows on the board
+    private final int numRows;
+    // Stores the number of columns on the board
+    private final int numColumns;
+    // Stores which cells can hold tiles and the lanes of every direction
+    private final BoardShape shape;
+    // Stores if the diagonal moves slide along the diagonals, instead of sliding vertically and then horizontally
+    private final boolean trueDiagonals;
+    // Stores the tile values on the board in row order (row * numColumns + column), 0 for empty or blocked
+    private final int[] cells;
+    // Stores the Zobrist hashes of the board and its symmetric variants, kept up to date by setCell()
+    private final BoardHash boardHash;
+    // Stores the random generator used to place new tiles, seeded so that games can be replayed
+    private final Random random;
+    // Stores how many new tiles are placed after a move and their values
+    private final SpawnRule spawnRule;
+    // Stores the indices of the empty cells, in no particular order
+    private final int[] emptyCells;
+    // Stores the position of each cell in emptyCells, or -1 if the cell is not empty
+    private final int[] emptyPositions;
+    // Stores the number of entries in emptyCells
+    private int emptyCount;
+    // Stores a lane of the board while it is being slid
+    private final int[] lane;
+    // Stores the indices (row * numColumns + column) of the cells that changed since the last clearChangedCells()
+    private final int[] changedCells;
+    // Stores which cells are already listed in changedCells
+    private final boolean[] changedMarks;
+    // Stores the number of entries in changedCells
+    private int changedCount;
+    // Stores if a new tile can be placed after the current move (first move is always true)
+    private boolean canSelectRandomInt = true;
+    // Stores the sum of all tiles created by merges since the game started
+    private long score;
+    // Stores the number of moves made since the game started
+    private int moveCount;
+
+    /**
+     * Creates a game with the given board size and the classic spawn rule, and starts it.
+     *
+     * @param rows    The number of rows on the board
+     * @param columns The number of columns on the board
+     * @param seed    The seed for the random generator that places new tiles
+     */
+    public GameEngine(int rows, int columns, long seed) {
+        this(rows, columns, seed, SpawnRule.CLASSIC);
+    }
+
+    /**
+     * Creates a game with the given board size and spawn rule, and starts it.
+     *
+     * @param rows      The number of rows on the board
+     * @param columns   The number of columns on the board
+     * @param seed      The seed for the random generator that places new tiles
+     * @param spawnRule The SpawnRule that decides how many new tiles are placed and their values
+     */
+    public GameEngine(int rows, int columns, long seed, SpawnRule spawnRule) {
+        this(BoardShape.rectangle(rows, columns), seed, spawnRule, false);
+    }
+
+    /**
+     * Creates a game on a board of any shape, and starts it.
+     *
+     * @param shape         The BoardShape of the board, which says which cells can hold tiles
+     * @param seed          The seed for the random generator that places new tiles
+     * @param spawnRule     The SpawnRule that decides how many new tiles are placed and their values
+     * @param trueDiagonals true to slide the diagonal moves along the diagonals, false to play them the way GameLogic
+     *                      does, as a vertical move followed by a horizontal one
+     */
+    public GameEngine(BoardShape shape, long seed, SpawnRule spawnRule, boolean trueDiagonals) {
+        numRows = shape.getNumRows();
+        numColumns = shape.getNumColumns();
+        this.shape = shape;
+        this.trueDiagonals = trueDiagonals;
+        int size = numRows * numColumns;
+        cells = new int[size];
+        boardHash = new BoardHash(numRows, numColumns);
+        random = new Random(seed);
+        this.spawnRule = spawnRule;
+        // Every playable cell starts empty
+        emptyCells = new int[size];
+        emptyPositions = new int[size];
+        for (int index = 0; index < size; index++) {
+            emptyPositions[index] = -1;
+            if (shape.isPlayable(index)) {
+                emptyPositions[index] = emptyCount;
+                emptyCells[emptyCount++] = index;
+            }
+        }
+        lane = new int[shape.getMaxLaneLength()];
+        changedCells = new int[size];
+        changedMarks = new boolean[size];
+        reset();
+    }
+
+    /**
+     * Converts a tile value to its exponent code: 0 for an empty cell, otherwise log2(value) + 1
+     *
+     * @param value A tile value, which is 0 or a power of two
+     * @return The exponent code of the value
+     */
+    public static int toExponent(int value) {
+        return value == 0 ? 0 : Integer.numberOfTrailingZeros(value) + 1;
+    }
+
+    /**
+     * Converts an exponent code back to its tile value
+     *
+     * @param exponent An exponent code returned by toExponent()
+     * @return The tile value, 0 for an empty cell
+     */
+    public static int fromExponent(int exponent) {
+        return exponent == 0 ? 0 : 1 << (exponent - 1);
+    }
+
+    /**
+     * Returns if a value can be stored in a cell: 0 for empty, or a power of two up to 2^30. The board hashes, the
+     * LaneCache, the server protocol and the exported data all store tiles by their exponent code, which only exists
+     * for these values.
+     *
+     * @param value The value to check
+     * @return true if the value is 0 or a power of two, false if not
+     */
+    public static boolean isTileValue(int value) {
+        return value >= 0 && Integer.bitCount(value) <= 1;
+    }
+
+    /**
+     * Returns the number of rows on the board
+     *
+     * @return An int with the number of rows
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Returns the number of columns on the board
+     *
+     * @return An int with the number of columns
+     */
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    /**
+     * Returns the value of a cell
+     *
+     * @param row    The row of the cell
+     * @param column The column of the cell
+     * @return The tile value, 0 for an empty cell
+     */
+    public int getCell(int row, int column) {
+        return cells[row * numColumns + column];
+    }
+
+    /**
+     * Returns the value of a cell by its index, row * numColumns + column
+     *
+     * @param index The index of the cell
+     * @return The tile value, 0 for an empty cell
+     */
+    public int getCell(int index) {
+        return cells[index];
+    }
+
+    /**
+     * Returns the shape of the board
+     *
+     * @return The BoardShape of the board
+     */
+    public BoardShape getShape() {
+        return shape;
+    }
+
+    /**
+     * Returns if the diagonal moves slide along the diagonals
+     *
+     * @return true for true diagonal moves, false for the composite moves of GameLogic
+     */
+    public boolean getTrueDiagonals() {
+        return trueDiagonals;
+    }
+
+    /**
+     * Returns the rule that decides how many new tiles are placed and their values
+     *
+     * @return The SpawnRule of the game
+     */
+    public SpawnRule getSpawnRule() {
+        return spawnRule;
+    }
+
+    /**
+     * Returns the number of empty cells
+     *
+     * @return An int with the number of empty cells
+     */
+    public int getEmptyCount() {
+        return emptyCount;
+    }
+
+    /**
+     * Returns the Zobrist hash of the board
+     *
+     * @return A long with the hash of the board
+     */
+    public long getHash() {
+        return boardHash.getHash();
+    }
+
+    /**
+     * Returns the hash shared by the board and all of its rotations and reflections
+     *
+     * @return A long with the canonical hash of the board
+     */
+    public long getCanonicalHash() {
+        return boardHash.getCanonicalHash();
+    }
+
+    /**
+     * Returns the hash shared by the board and its variants that play exactly alike (see
+     * BoardHash.MOVE_PRESERVING_TRANSFORMS), which is the one to use when merging positions in a search
+     *
+     * @return A long with the canonical hash of the board under the move-preserving transforms
+     */
+    public long getMovePreservingHash() {
+        return boardHash.getCanonicalHash(BoardHash.MOVE_PRESERVING_TRANSFORMS);
+    }
+
+    /**
+     * Returns the hashes of the board and its symmetric variants
+     *
+     * @return The BoardHash of the board
+     */
+    public BoardHash getBoardHash() {
+        return boardHash;
+    }
+
+    /**
+     * Sets the value of a cell, updating the board hashes and the list of empty cells, and recording the cell as
+     * changed if the value is different
+     *
+     * @param row    The row of the cell
+     * @param column The column of the cell
+     * @param value  The new tile value, 0 for an empty cell
+     * @throws IllegalArgumentException if the value is not 0 or a power of two, or a tile is placed on a blocked cell
+     */
+    public void setCell(int row, int column, int value) {
+        setCell(row * numColumns + column, value);
+    }
+
+    /**
+     * Sets the value of a cell by its index, row * numColumns + column. Every change to the board goes through here.
+     *
+     * @param index The index of the cell
+     * @param value The new tile value, 0 for an empty cell
+     * @throws IllegalArgumentException if the value is not 0 or a power of two, or a tile is placed on a blocked cell
+     */
+    public void setCell(int index, int value) {
+        int old = cells[index];
+        if (old == value) {
+            return;
+        }
+        if (!isTileValue(value)) {
+            throw new IllegalArgumentException("Tile values must be 0 or a power of two: " + value);
+        }
+        if (!shape.isPlayable(index)) {
+            throw new IllegalArgumentException("Cell " + index + " is blocked");
+        }
+        boardHash.update(index, old, value);
+        if (value == 0) {
+            // Appends the cell to the list of empty cells
+            emptyPositions[index] = emptyCount;
+            emptyCells[emptyCount++] = index;
+        } else if (old == 0) {
+            // Removes the cell from the list by moving the last entry into its place
+            int position = emptyPositions[index];
+            int last = emptyCells[--emptyCount];
+            emptyCells[position] = last;
+            emptyPositions[last] = position;
+            emptyPositions[index] = -1;
+        }
+        cells[index] = value;
+        if (!changedMarks[index]) {
+            changedMarks[index] = true;
+            changedCells[changedCount++] = index;
+        }
+    }
+
+    /**
+     * Returns a copy of the board
+     *
+     * @return A new int[][] array with the tile values
+     */
+    public int[][] copyBoard() {
+        int[][] copy = new int[numRows][];
+        for (int i = 0; i < numRows; i++) {
+            copy[i] = Arrays.copyOfRange(cells, i * numColumns, (i + 1) * numColumns);
+        }
+        return copy;
+    }
+
+    /**
+     * Replaces the board with the given tile values, without placing a new tile
+     *
+     * @param values A 2D array with the same size as the board
+     * @throws IllegalArgumentException if a value is not 0 or a power of two, in which case the board is unchanged
+     */
+    public void setBoard(int[][] values) {
+        for (int[] row : values) {
+            for (int value : row) {
+                if (!isTileValue(value)) {
+                    throw new IllegalArgumentException("Tile values must be 0 or a power of two: " + value);
+                }
+            }
+        }
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numColumns; j++) {
+                setCell(i, j, values[i][j]);
+            }
+        }
+    }
+
+    /**
+     * Copies the board, score, move count and canSelectRandomInt of another engine of the same shape, so that moves can
+     * be tried out on this one. The random generator is not copied.
+     *
+     * @param other The GameEngine to copy
+     */
+    public void copyFrom(GameEngine other) {
+        if (!other.shape.equals(shape)) {
+            throw new IllegalArgumentException("Boards must be the same shape");
+        }
+        for (int index = 0; index < cells.length; index++) {
+            setCell(index, other.cells[index]);
+        }
+        score = other.score;
+        moveCount = other.moveCount;
+        canSelectRandomInt = other.canSelectRandomInt;
+    }
+
+    /**
+     * Returns the score, which is the sum of all tiles created by merges
+     *
+     * @return A long with the score
+     */
+    public long getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the number of moves made since the game started
+     *
+     * @return An int with the number of moves
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the boolean canSelectRandomInt
+     *
+     * @return the boolean canSelectRandomInt
+     */
+    public boolean getCanSelectRandomInt() {
+        return canSelectRandomInt;
+    }
+
+    /**
+     * Sets canSelectRandomInt to the condition passed in the parameters
+     *
+     * @param condition A boolean value that stores either true or false
+     */
+    public void setCanSelectRandomInt(boolean condition) {
+        canSelectRandomInt = condition;
+    }
+
+    /**
+     * Returns the number of cells that changed since the last call to clearChangedCells()
+     *
+     * @return An int with the number of changed cells
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /**
+     * Returns the index of a changed cell, row * numColumns + column
+     *
+     * @param i A position between 0 and getChangedCount() - 1
+     * @return The index of the changed cell
+     */
+    public int getChangedCell(int i) {
+        return changedCells[i];
+    }
+
+    /**
+     * Forgets the cells that have changed so far
+     */
+    public void clearChangedCells() {
+        for (int i = 0; i < changedCount; i++) {
+            changedMarks[changedCells[i]] = false;
+        }
+        changedCount = 0;
+    }
+
+    /**
+     * Starts a new game the same way a new game in SlideGameUI starts: new tiles are placed once when the board is
+     * initialized and once more when the board is first shown. With the classic spawn rule, that makes two tiles.
+     */
+    public void reset() {
+        for (int index = 0; index < cells.length; index++) {
+            setCell(index, 0);
+        }
+        score = 0;
+        moveCount = 0;
+        canSelectRandomInt = true;
+        spawnTiles();
+        placeTileIfAllowed();
+    }
+
+    /**
+     * Selects a random empty cell and changes it to 1, if there is an empty cell
+     */
+    public void selectRandomInt() {
+        if (emptyCount > 0) {
+            setCell(emptyCells[random.nextInt(emptyCount)], 1);
+        }
+    }
+
+    /**
+     * Places the new tiles the spawn rule asks for on distinct empty cells, each set of cells being equally likely.
+     * Fewer tiles are placed if there are not enough empty cells.
+     *
+     * @return The number of tiles placed
+     */
+    public int spawnTiles() {
+        int tiles = Math.min(spawnRule.getTileCount(shape.getPlayableCount()), emptyCount);
+        for (int t = 0; t < tiles; t++) {
+            // Drawing from the cells that are still empty is sampling without replacement, and setCell() removes the
+            // chosen cell from the list in constant time
+            setCell(emptyCells[random.nextInt(emptyCount)], spawnRule.nextValue(random));
+        }
+        return tiles;
+    }
+
+    /**
+     * Places new tiles if the last move allowed them, then prevents more until the next move allows them
+     */
+    private void placeTileIfAllowed() {
+        if (canSelectRandomInt) {
+            spawnTiles();
+            canSelectRandomInt = false;
+        }
+    }
+
+    /**
+     * Slides the board in the given direction and places a new tile if the move allows one
+     *
+     * @param direction The Direction to slide the tiles in
+     * @return The sum of the tiles created by merges during the move
+     */
+    public int move(Direction direction) {
+        int gained = slide(direction);
+        moveCount++;
+        placeTileIfAllowed();
+        return gained;
+    }
+
+    /**
+     * Slides the board in the given direction without placing a new tile
+     *
+     * @param direction The Direction to slide the tiles in
+     * @return The sum of the tiles created by merges during the move
+     */
+    public int slide(Direction direction) {
+        int gained;
+        if (direction.isDiagonal() && !trueDiagonals) {
+            // The diagonal moves are composites, the same as GameLogic.mergeUpLeft() and the other diagonals
+            gained = slideLanes(direction.getVertical());
+            gained += slideLanes(direction.getHorizontal());
+        } else {
+            gained = slideLanes(direction);
+        }
+        score += gained;
+        return gained;
+    }
+
+    /**
+     * Slides every lane of a direction towards its first cell. This one loop serves all eight directions and any board
+     * shape, since the BoardShape lists the cells of each lane in order.
+     *
+     * @param direction The Direction whose lanes are slid
+     * @return The sum of the tiles created by merges
+     */
+    private int slideLanes(Direction direction) {
+        int[] laneCells = shape.getLaneCells(direction);
+        int[] laneStarts = shape.getLaneStarts(direction);
+        // Stores this thread's cache for the current lane length, looked up again only when the length changes
+        LaneCache cache = null;
+        int cacheLength = 0;
+        // Stores if any lane moved and if any lane merged
+        boolean moved = false;
+        boolean merged = false;
+        int gained = 0;
+        for (int l = 0; l + 1 < laneStarts.length; l++) {
+            int start = laneStarts[l];
+            int length = laneStarts[l + 1] - start;
+            // A lane of one cell can never change
+            if (length < 2) {
+                continue;
+            }
+            for (int k = 0; k < length; k++) {
+                lane[k] = cells[laneCells[start + k]];
+            }
+            if (length != cacheLength) {
+                cache = LaneCache.forCurrentThread(length);
+                cacheLength = length;
+            }
+            if (cache.slide(lane)) {
+                moved = true;
+                merged |= cache.getLastMerged();
+                gained += cache.getLastScore();
+                for (int k = 0; k < length; k++) {
+                    setCell(laneCells[start + k], lane[k]);
+                }
+            }
+        }
+        // GameLogic.mergeLeft() only allows a new tile after a merge, while the other directions allow one after any
+        // movement
+        if (direction == Direction.LEFT ? merged : moved) {
+            canSelectRandomInt = true;
+        }
+        return gained;
+    }
+
+    /**
+     * Checks if there are more moves that can be made on the board. Like GameLogic.isGameOver(), a board with an empty
+     * cell or two equal tiles next to each other in a row or column is not over; with true diagonal moves, two equal
+     * tiles next to each other on a diagonal also keep the game going.
+     *
+     * @return true if no more moves can be made, false if not
+     */
+    public boolean isGameOver() {
+        // Check for empty cells first
+        if (emptyCount > 0) {
+            return false;
+        }
+        // If no empty cells, then check for possible merges horizontally and vertically
+        if (hasEqualNeighbours(Direction.RIGHT) || hasEqualNeighbours(Direction.DOWN)) {
+            return false;
+        }
+        return !trueDiagonals || !(hasEqualNeighbours(Direction.DOWN_RIGHT) || hasEqualNeighbours(Direction.DOWN_LEFT));
+    }
+
+    /**
+     * Checks if any lane of a direction has two equal tiles next to each other
+     *
+     * @param direction The Direction whose lanes are checked
+     * @return true if two neighbouring cells in a lane hold the same value, false if not
+     */
+    private boolean hasEqualNeighbours(Direction direction) {
+        int[] laneCells = shape.getLaneCells(direction);
+        int[] laneStarts = shape.getLaneStarts(direction);
+        for (int l = 0; l + 1 < laneStarts.length; l++) {
+            for (int k = laneStarts[l] + 1; k < laneStarts[l + 1]; k++) {
+                if (cells[laneCells[k]] == cells[laneCells[k - 1]]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,482 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * GameServer.java hosts many independent slide games in one JVM over non-blocking NIO sockets. Each connection owns
+ * one GameEngine session, and connections are spread over a small number of event loops, one selector thread each, so
+ * thousands of sessions can be served without a thread per client.
+ *
+ * <p>Every message is a frame made of a 4-byte length, followed by that many bytes: a 1-byte message type and its
+ * body. All numbers are big-endian.
+ * <ul>
+ *     <li>NEW_GAME (client): short rows, short columns, long seed, then optionally a short length and a UTF-8 spawn
+ *     rule (see SpawnRule.parse()). Starts a new game on the connection, with the classic rule if none is given.</li>
+ *     <li>MOVE (client): byte direction code (see Direction.getCode()). Slides the board of the current game.</li>
+ *     <li>BOARD_DIFF (server): byte flags, long score, int count, then count entries of int cell index
+ *     (row * columns + column) and byte exponent (see GameEngine.toExponent()). Only the cells that changed are sent;
+ *     the reply to NEW_GAME lists every non-empty cell of the new board.</li>
+ *     <li>ERROR (server): short length and UTF-8 message, sent before the server closes the connection.</li>
+ * </ul>
+ */
+public class GameServer implements Closeable {
+    // Stores the port used when none is given
+    public static final int DEFAULT_PORT = 2048;
+    // Stores the message type codes
+    public static final byte NEW_GAME = 0x01;
+    public static final byte MOVE = 0x02;
+    public static final byte BOARD_DIFF = (byte) 0x81;
+    public static final byte ERROR = (byte) 0xFF;
+    // Stores the bits of the BOARD_DIFF flags
+    public static final int FLAG_CHANGED = 1;
+    public static final int FLAG_GAME_OVER = 2;
+    // Stores the smallest and largest number of rows or columns allowed, the same limits as the board creation dialogs
+    public static final int MIN_BOARD_SIZE = 2;
+    public static final int MAX_BOARD_SIZE = 100;
+    // Stores the largest frame a client may send
+    private static final int MAX_FRAME_LENGTH = 64;
+    // Stores the amount of unsent output above which a session stops reading until the client catches up
+    private static final int MAX_PENDING_OUTPUT = 64 * 1024;
+
+    // Stores the channel that accepts new connections
+    private final ServerSocketChannel serverChannel;
+    // Stores the event loops that serve the connections
+    private final EventLoop[] eventLoops;
+    // Stores the thread that accepts new connections and hands them to the event loops
+    private final Thread acceptThread;
+    // Stores if the server is still running
+    private volatile boolean running = true;
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param port          The port to listen on, or 0 to pick a free port
+     * @param numEventLoops The number of selector threads serving the connections
+     * @throws IOException if the server socket cannot be opened
+     */
+    public GameServer(int port, int numEventLoops) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        eventLoops = new EventLoop[Math.max(1, numEventLoops)];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop(i);
+            eventLoops[i].start();
+        }
+        acceptThread = new Thread(this::acceptConnections, "game-server-accept");
+        acceptThread.start();
+    }
+
+    /**
+     * Returns the port the server is listening on
+     *
+     * @return An int with the port number
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Accepts connections and hands them to the event loops in turn, until the server is closed.
+     */
+    private void acceptConnections() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                eventLoops[next].register(channel);
+                next = (next + 1) % eventLoops.length;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Failed to accept a connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes every open session.
+     *
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverChannel.close();
+        for (EventLoop loop : eventLoops) {
+            loop.shutdown();
+        }
+    }
+
+    /**
+     * Starts a server from the command line
+     *
+     * @param args The port to listen on and the number of event loops, both optional
+     * @throws IOException if the server socket cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int loops = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        GameServer server = new GameServer(port, loops);
+        System.out.println("Slide Game server listening on localhost:" + server.getPort() + " with " + loops + " event loops");
+    }
+
+    /**
+     * A selector thread that reads frames from its connections, plays the moves and writes the replies.
+     */
+    private final class EventLoop extends Thread {
+        // Stores the selector that waits for the connections to become readable or writable
+        private final Selector selector;
+        // Stores the connections accepted since the last time the selector woke up
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Creates an event loop with its own selector.
+         *
+         * @param id The number of the event loop, used in the thread name
+         * @throws IOException if the selector cannot be opened
+         */
+        EventLoop(int id) throws IOException {
+            super("game-server-loop-" + id);
+            selector = Selector.open();
+            setDaemon(true);
+        }
+
+        /**
+         * Queues a connection to be served by this event loop
+         *
+         * @param channel A non-blocking SocketChannel
+         */
+        void register(SocketChannel channel) {
+            pending.add(channel);
+            // If the loop has already stopped it will not drain the queue again, so the connection is closed here,
+            // unless the loop took it first
+            if (!running && pending.remove(channel)) {
+                closeQuietly(channel);
+                return;
+            }
+            selector.wakeup();
+        }
+
+        /**
+         * Stops the event loop. The selector and the connections are closed by the loop thread itself, since the key
+         * set of a selector must not be used by another thread while it selects or registers.
+         */
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+
+        /**
+         * Closes every connection of this event loop, including those never registered, and the selector. Runs on the
+         * loop thread once it has stopped.
+         */
+        private void closeAll() {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key.channel());
+                }
+            } catch (ClosedSelectorException e) {
+                // The selector has no keys left to close
+            }
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                closeQuietly(channel);
+            }
+            closeQuietly(selector);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    // Registers the connections handed over by the accept thread
+                    SocketChannel channel;
+                    while ((channel = pending.poll()) != null) {
+                        channel.register(selector, SelectionKey.OP_READ, new Session(channel));
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Session session = (Session) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                session.read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                session.flush(key);
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            // Ends only the session that failed, so the other sessions on this loop keep running
+                            session.close(key);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    System.err.println(getName() + " stopped: " + e.getMessage());
+                }
+            } finally {
+                closeAll();
+            }
+        }
+    }
+
+    /**
+     * Closes a channel or selector, ignoring failures since there is nothing else to release
+     *
+     * @param closeable The channel or selector to close
+     */
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing else to release
+        }
+    }
+
+    /**
+     * The state of one connection: its buffers and its game.
+     */
+    private static final class Session {
+        // Stores the connection to the client
+        private final SocketChannel channel;
+        // Stores the bytes received but not yet handled
+        private final ByteBuffer input = ByteBuffer.allocate(256);
+        // Stores the bytes waiting to be written, kept in write mode
+        private ByteBuffer output = ByteBuffer.allocate(1024);
+        // Stores the game played on this connection, or null before the first NEW_GAME
+        private GameEngine engine;
+        // Stores if frames are waiting in the input buffer because too much output is pending
+        private boolean paused;
+
+        /**
+         * Creates a session for a new connection.
+         *
+         * @param channel The connection to the client
+         */
+        Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Reads what is available from the connection and handles every complete frame
+         *
+         * @param key The SelectionKey of the connection
+         * @throws IOException if the connection fails
+         */
+        void read(SelectionKey key) throws IOException {
+            if (channel.read(input) < 0) {
+                close(key);
+                return;
+            }
+            if (handleFrames(key)) {
+                flush(key);
+            }
+        }
+
+        /**
+         * Handles every complete frame in the input buffer, stopping early while too much output is pending
+         *
+         * @param key The SelectionKey of the connection
+         * @return true if the session is still open, false if it was closed because of a bad frame
+         */
+        private boolean handleFrames(SelectionKey key) {
+            input.flip();
+            try {
+                // Handles frames while a whole frame is available and the client is keeping up with the replies
+                while (input.remaining() >= 4 && output.position() < MAX_PENDING_OUTPUT) {
+                    int length = input.getInt(input.position());
+                    if (length < 1 || length > MAX_FRAME_LENGTH) {
+                        fail(key, "Invalid frame length: " + length);
+                        return false;
+                    }
+                    if (input.remaining() < 4 + length) {
+                        break;
+                    }
+                    // Limits the buffer to the frame, so a short body cannot read into the next frame
+                    int frameEnd = input.position() + 4 + length;
+                    int limit = input.limit();
+                    input.limit(frameEnd);
+                    input.getInt();
+                    handleFrame(input.get());
+                    input.limit(limit);
+                    input.position(frameEnd);
+                }
+            } catch (IllegalArgumentException | BufferUnderflowException e) {
+                fail(key, e.getMessage());
+                return false;
+            }
+            // Frames are held back only when the pending output stopped the loop, not when a frame is incomplete
+            paused = input.remaining() >= 4 && output.position() >= MAX_PENDING_OUTPUT;
+            input.compact();
+            return true;
+        }
+
+        /**
+         * Handles one frame from the client, whose body is at the position of the input buffer
+         *
+         * @param type The message type of the frame
+         */
+        private void handleFrame(byte type) {
+            if (type == NEW_GAME) {
+                int rows = input.getShort();
+                int columns = input.getShort();
+                long seed = input.getLong();
+                if (rows < MIN_BOARD_SIZE || rows > MAX_BOARD_SIZE || columns < MIN_BOARD_SIZE || columns > MAX_BOARD_SIZE) {
+                    throw new IllegalArgumentException("Board size must be between " + MIN_BOARD_SIZE + " and " + MAX_BOARD_SIZE);
+                }
+                SpawnRule spawnRule = SpawnRule.CLASSIC;
+                if (input.hasRemaining()) {
+                    // Reads the length as unsigned, and checks it against the frame before allocating anything
+                    int ruleLength = Short.toUnsignedInt(input.getShort());
+                    if (ruleLength > input.remaining()) {
+                        throw new IllegalArgumentException("Spawn rule length " + ruleLength + " exceeds the frame");
+                    }
+                    byte[] rule = new byte[ruleLength];
+                    input.get(rule);
+                    spawnRule = SpawnRule.parse(new String(rule, StandardCharsets.UTF_8));
+                }
+                engine = new GameEngine(rows, columns, seed, spawnRule);
+                writeDiff(true);
+            } else if (type == MOVE) {
+                if (engine == null) {
+                    throw new IllegalArgumentException("No game has been started");
+                }
+                engine.move(Direction.fromCode(input.get()));
+                writeDiff(engine.getChangedCount() > 0);
+            } else {
+                throw new IllegalArgumentException("Unknown message type: " + type);
+            }
+        }
+
+        /**
+         * Writes a BOARD_DIFF frame with the cells that changed since the last one
+         *
+         * @param changed true if the board changed
+         */
+        private void writeDiff(boolean changed) {
+            int count = engine.getChangedCount();
+            int length = 1 + 1 + 8 + 4 + count * 5;
+            ensureOutput(4 + length);
+            output.putInt(length);
+            output.put(BOARD_DIFF);
+            output.put((byte) ((changed ? FLAG_CHANGED : 0) | (engine.isGameOver() ? FLAG_GAME_OVER : 0)));
+            output.putLong(engine.getScore());
+            output.putInt(count);
+            for (int i = 0; i < count; i++) {
+                int index = engine.getChangedCell(i);
+                output.putInt(index);
+                output.put((byte) GameEngine.toExponent(engine.getCell(index)));
+            }
+            engine.clearChangedCells();
+        }
+
+        /**
+         * Grows the output buffer if it cannot fit the given number of bytes
+         *
+         * @param bytes The number of bytes about to be written
+         */
+        private void ensureOutput(int bytes) {
+            if (output.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + bytes));
+                output.flip();
+                larger.put(output);
+                output = larger;
+            }
+        }
+
+        /**
+         * Writes as much pending output as the connection accepts, and waits for it to become writable if any is left.
+         * While more than MAX_PENDING_OUTPUT bytes are waiting, the session stops reading, so a client that sends moves
+         * without reading the replies cannot make the server buffer without limit. Frames held back meanwhile are
+         * handled once the output drains.
+         *
+         * @param key The SelectionKey of the connection
+         * @throws IOException if the connection fails
+         */
+        void flush(SelectionKey key) throws IOException {
+            writeOutput();
+            while (paused && output.position() < MAX_PENDING_OUTPUT) {
+                if (!handleFrames(key)) {
+                    return;
+                }
+                writeOutput();
+            }
+            if (output.position() >= MAX_PENDING_OUTPUT) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (output.position() > 0) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Writes as much pending output as the connection accepts
+         *
+         * @throws IOException if the connection fails
+         */
+        private void writeOutput() throws IOException {
+            output.flip();
+            channel.write(output);
+            output.compact();
+        }
+
+        /**
+         * Sends an ERROR frame and closes the connection
+         *
+         * @param key     The SelectionKey of the connection
+         * @param message The reason for closing the connection
+         */
+        private void fail(SelectionKey key, String message) {
+            byte[] bytes = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+            int messageLength = Math.min(bytes.length, Short.MAX_VALUE);
+            ensureOutput(4 + 3 + messageLength);
+            output.putInt(3 + messageLength);
+            output.put(ERROR);
+            output.putShort((short) messageLength);
+            output.put(bytes, 0, messageLength);
+            try {
+                // Makes one attempt to deliver the error; the connection is closed either way
+                output.flip();
+                channel.write(output);
+            } catch (IOException e) {
+                // The client is already gone
+            }
+            close(key);
+        }
+
+        /**
+         * Closes the connection and ends the session
+         *
+         * @param key The SelectionKey of the connection
+         */
+        void close(SelectionKey key) {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing else to release
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * HeuristicPolicy.java plays the slide game automatically by trying each of the eight directions and picking the one
+ * whose resulting board scores best under a weighted evaluation function. The evaluation looks at four features of the
+ * board, each computed on the exponent codes of the tiles (see GameEngine.toExponent()):
+ * <ul>
+ *     <li>EMPTY: the number of empty cells.</li>
+ *     <li>MONOTONICITY: how far the rows and columns are from being sorted, as a penalty (0 when all are sorted).</li>
+ *     <li>CORNER: the largest exponent found in a corner, which rewards keeping the big tiles in a corner.</li>
+ *     <li>MERGES: the number of pairs of equal tiles next to each other.</li>
+ * </ul>
+ */
+public class HeuristicPolicy {
+    // Stores the index of each feature in the weight vector
+    public static final int EMPTY = 0;
+    public static final int MONOTONICITY = 1;
+    public static final int CORNER = 2;
+    public static final int MERGES = 3;
+    // Stores the number of features
+    public static final int NUM_FEATURES = 4;
+    // Stores the names of the features, in weight order
+    public static final String[] FEATURE_NAMES = {"empty", "monotonicity", "corner", "merges"};
+
+    // Stores the weight of each feature
+    private final double[] weights;
+
+    /**
+     * Creates a policy with the given weights.
+     *
+     * @param weights One weight per feature, in the order EMPTY, MONOTONICITY, CORNER, MERGES
+     */
+    public HeuristicPolicy(double[] weights) {
+        if (weights.length != NUM_FEATURES) {
+            throw new IllegalArgumentException("Expected " + NUM_FEATURES + " weights");
+        }
+        this.weights = weights.clone();
+    }
+
+    /**
+     * Returns a copy of the weights
+     *
+     * @return A double[] array with one weight per feature
+     */
+    public double[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * Evaluates the board of an engine
+     *
+     * @param engine The GameEngine whose board is evaluated
+     * @return The weighted sum of the board's features
+     */
+    public double evaluate(GameEngine engine) {
+        int rows = engine.getNumRows();
+        int columns = engine.getNumColumns();
+        int empty = 0;
+        int merges = 0;
+        double monotonicity = 0;
+        // Counts empty cells and equal neighbours to the right and below
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int value = engine.getCell(i, j);
+                if (value == 0) {
+                    empty++;
+                    continue;
+                }
+                if (j + 1 < columns && engine.getCell(i, j + 1) == value) {
+                    merges++;
+                }
+                if (i + 1 < rows && engine.getCell(i + 1, j) == value) {
+                    merges++;
+                }
+            }
+        }
+        // Penalizes each row and column by the smaller of its total rises and total falls
+        for (int i = 0; i < rows; i++) {
+            int rises = 0, falls = 0;
+            for (int j = 1; j < columns; j++) {
+                int step = GameEngine.toExponent(engine.getCell(i, j)) - GameEngine.toExponent(engine.getCell(i, j - 1));
+                rises += Math.max(0, step);
+                falls += Math.max(0, -step);
+            }
+            monotonicity -= Math.min(rises, falls);
+        }
+        for (int j = 0; j < columns; j++) {
+            int rises = 0, falls = 0;
+            for (int i = 1; i < rows; i++) {
+                int step = GameEngine.toExponent(engine.getCell(i, j)) - GameEngine.toExponent(engine.getCell(i - 1, j));
+                rises += Math.max(0, step);
+                falls += Math.max(0, -step);
+            }
+            monotonicity -= Math.min(rises, falls);
+        }
+        int corner = Math.max(Math.max(GameEngine.toExponent(engine.getCell(0, 0)), GameEngine.toExponent(engine.getCell(0, columns - 1))),
+                Math.max(GameEngine.toExponent(engine.getCell(rows - 1, 0)), GameEngine.toExponent(engine.getCell(rows - 1, columns - 1))));
+        return weights[EMPTY] * empty + weights[MONOTONICITY] * monotonicity + weights[CORNER] * corner + weights[MERGES] * merges;
+    }
+
+    /**
+     * Chooses the move that gives the best score gain plus evaluation, trying each direction on a scratch engine
+     *
+     * @param engine  The GameEngine to choose a move for
+     * @param scratch A GameEngine of the same size, whose board is overwritten
+     * @return The best Direction, or null if no direction changes the board
+     */
+    public Direction chooseMove(GameEngine engine, GameEngine scratch) {
+        Direction best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (Direction direction : Direction.values()) {
+            scratch.copyFrom(engine);
+            scratch.clearChangedCells();
+            int gained = scratch.slide(direction);
+            // Skips moves that do nothing, since they would never end the game
+            if (scratch.getChangedCount() == 0) {
+                continue;
+            }
+            double value = gained + evaluate(scratch);
+            if (value > bestValue) {
+                bestValue = value;
+                best = direction;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Plays a whole game with this policy
+     *
+     * @param rows     The number of rows on the board
+     * @param columns  The number of columns on the board
+     * @param seed     The seed for the new tiles
+     * @param maxMoves The number of moves after which the game is stopped
+     * @return The score at the end of the game
+     */
+    public long playGame(int rows, int columns, long seed, int maxMoves) {
+        GameEngine engine = new GameEngine(rows, columns, seed);
+        GameEngine scratch = new GameEngine(rows, columns, 0);
+        while (!engine.isGameOver() && engine.getMoveCount() < maxMoves) {
+            Direction direction = chooseMove(engine, scratch);
+            if (direction == null) {
+                break;
+            }
+            engine.move(direction);
+        }
+        return engine.getScore();
+    }
+}
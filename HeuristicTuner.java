@@ -0,0 +1,421 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * HeuristicTuner.java evolves the weights of HeuristicPolicy with a genetic algorithm, without any GUI. Every
+ * generation, each candidate weight vector plays the same set of games (the same seeds for the new tiles), so that
+ * candidates are compared on equal luck. The best candidate of the previous generation plays all of the games first;
+ * the others then play in parallel, one candidate per core, and stop early once a paired comparison against it shows
+ * that they are clearly worse. The next generation keeps the best candidates and breeds the rest by tournament
+ * selection, blend crossover and Gaussian mutation.
+ *
+ * <p>Progress is saved to a checkpoint file after every generation and picked up again on the next run. Each
+ * generation's randomness is derived from the seed and the generation number, so a resumed run continues exactly as an
+ * uninterrupted one would.
+ *
+ * <p>Usage: {@code java HeuristicTuner [checkpoint] [generations] [population] [games] [rows] [columns] [seed]}
+ */
+public class HeuristicTuner {
+    // Stores the weights the first generation starts around
+    private static final double[] DEFAULT_WEIGHTS = {2.7, 1.0, 1.0, 0.7};
+    // Stores the number of best candidates copied unchanged into the next generation
+    private static final int ELITE_COUNT = 2;
+    // Stores the number of candidates in each selection tournament
+    private static final int TOURNAMENT_SIZE = 3;
+    // Stores the mutation size of the first generation, how much it shrinks each generation, and its lower bound
+    private static final double INITIAL_SIGMA = 1.0;
+    private static final double SIGMA_DECAY = 0.93;
+    private static final double MIN_SIGMA = 0.05;
+    // Stores the number of games played between early stopping checks, and the number played before the first check
+    private static final int BATCH_GAMES = 8;
+    private static final int MIN_GAMES = 16;
+    // Stores how many standard errors below the best candidate a candidate must be to stop early
+    private static final double STOP_Z = 2.0;
+    // Stores the number of moves after which a game is stopped
+    private static final int MAX_MOVES = 20_000;
+
+    // Stores the settings of the run
+    private final Path checkpoint;
+    private final int generations, populationSize, gamesPerCandidate, numRows, numColumns;
+    private final long seed;
+    // Stores the worker threads that play the games
+    private final ExecutorService pool;
+    // Stores the generation about to be evaluated, the current mutation size and the candidates
+    private int generation;
+    private double sigma = INITIAL_SIGMA;
+    private double[][] population;
+    // Stores the best weights found so far and their mean score
+    private double[] bestWeights;
+    private double bestFitness = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates a tuner.
+     *
+     * @param checkpoint        The file progress is saved to and resumed from
+     * @param generations       The number of generations to run in total
+     * @param populationSize    The number of candidates in each generation
+     * @param gamesPerCandidate The number of games each candidate plays, unless it is stopped early
+     * @param rows              The number of rows on the boards
+     * @param columns           The number of columns on the boards
+     * @param seed              The seed all randomness of the run is derived from
+     * @param threads           The number of worker threads
+     */
+    public HeuristicTuner(Path checkpoint, int generations, int populationSize, int gamesPerCandidate,
+                          int rows, int columns, long seed, int threads) {
+        if (populationSize <= ELITE_COUNT) {
+            throw new IllegalArgumentException("The population must be larger than " + ELITE_COUNT);
+        }
+        this.checkpoint = checkpoint;
+        this.generations = generations;
+        this.populationSize = populationSize;
+        this.gamesPerCandidate = Math.max(MIN_GAMES, gamesPerCandidate);
+        numRows = rows;
+        numColumns = columns;
+        this.seed = seed;
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Runs the tuner from the command line
+     *
+     * @param args The checkpoint file, generations, population size, games per candidate, rows, columns and seed
+     * @throws Exception if the checkpoint cannot be read or written, or a game fails
+     */
+    public static void main(String[] args) throws Exception {
+        Path checkpoint = Paths.get(args.length > 0 ? args[0] : "tuner-checkpoint.properties");
+        int generations = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int population = args.length > 2 ? Integer.parseInt(args[2]) : 24;
+        int games = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int rows = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        int columns = args.length > 5 ? Integer.parseInt(args[5]) : 4;
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : 2048;
+        if (generations < 1) {
+            System.out.println("Usage: java HeuristicTuner [checkpoint] [generations] [population] [games] [rows]"
+                    + " [columns] [seed], with at least one generation");
+            return;
+        }
+        HeuristicTuner tuner = new HeuristicTuner(checkpoint, generations, population, games, rows, columns, seed,
+                Runtime.getRuntime().availableProcessors());
+        try {
+            tuner.run();
+        } finally {
+            tuner.pool.shutdownNow();
+        }
+        // The best weights are only known once a generation has been evaluated, here or in the resumed checkpoint
+        if (tuner.bestWeights == null) {
+            System.out.println("No generation was evaluated");
+            return;
+        }
+        System.out.println("best weights " + format(tuner.bestWeights) + " mean score " + Math.round(tuner.bestFitness));
+    }
+
+    /**
+     * Resumes from the checkpoint if there is one, and runs the remaining generations
+     *
+     * @throws IOException          if the checkpoint cannot be read or written
+     * @throws InterruptedException if the tuner is interrupted
+     * @throws ExecutionException   if a game fails
+     */
+    public void run() throws IOException, InterruptedException, ExecutionException {
+        if (Files.exists(checkpoint)) {
+            loadCheckpoint();
+            System.out.println("Resuming at generation " + generation + " from " + checkpoint);
+        } else {
+            population = initialPopulation();
+        }
+        while (generation < generations) {
+            List<Candidate> ranked = evaluateGeneration();
+            Candidate best = ranked.get(0);
+            if (best.mean() > bestFitness) {
+                bestFitness = best.mean();
+                bestWeights = best.weights.clone();
+            }
+            long stopped = ranked.stream().filter(candidate -> candidate.stoppedEarly).count();
+            System.out.printf("generation %d: best %s mean %.0f, %d of %d stopped early%n",
+                    generation, format(best.weights), best.mean(), stopped, ranked.size());
+            population = breed(ranked);
+            sigma = Math.max(MIN_SIGMA, sigma * SIGMA_DECAY);
+            generation++;
+            saveCheckpoint();
+        }
+    }
+
+    /**
+     * Creates the first generation: the default weights and mutations of them
+     *
+     * @return The candidate weight vectors
+     */
+    private double[][] initialPopulation() {
+        Random random = new Random(seed);
+        double[][] initial = new double[populationSize][];
+        initial[0] = DEFAULT_WEIGHTS.clone();
+        for (int c = 1; c < populationSize; c++) {
+            initial[c] = mutate(DEFAULT_WEIGHTS, random);
+        }
+        return initial;
+    }
+
+    /**
+     * Plays the games of the current generation and ranks the candidates
+     *
+     * @return The candidates, best first, with the ones stopped early after all that finished
+     * @throws InterruptedException if the tuner is interrupted
+     * @throws ExecutionException   if a game fails
+     */
+    private List<Candidate> evaluateGeneration() throws InterruptedException, ExecutionException {
+        // Uses the same game seeds for every candidate in the generation (common random numbers)
+        Random random = new Random(seed * 31 + generation);
+        long[] gameSeeds = new long[gamesPerCandidate];
+        for (int g = 0; g < gamesPerCandidate; g++) {
+            gameSeeds[g] = random.nextLong();
+        }
+        // Plays every game of the incumbent, which is the best candidate carried over from the last generation
+        Candidate incumbent = new Candidate(population[0]);
+        HeuristicPolicy incumbentPolicy = new HeuristicPolicy(incumbent.weights);
+        List<Future<Long>> incumbentGames = new ArrayList<>();
+        for (long gameSeed : gameSeeds) {
+            incumbentGames.add(pool.submit(() -> incumbentPolicy.playGame(numRows, numColumns, gameSeed, MAX_MOVES)));
+        }
+        for (int g = 0; g < gamesPerCandidate; g++) {
+            incumbent.scores[g] = incumbentGames.get(g).get();
+        }
+        incumbent.played = gamesPerCandidate;
+        // Plays the other candidates in parallel, each racing against the incumbent's scores on the same seeds
+        List<Future<Candidate>> results = new ArrayList<>();
+        for (int c = 1; c < populationSize; c++) {
+            Candidate candidate = new Candidate(population[c]);
+            results.add(pool.submit(() -> race(candidate, incumbent, gameSeeds)));
+        }
+        List<Candidate> ranked = new ArrayList<>();
+        ranked.add(incumbent);
+        for (Future<Candidate> result : results) {
+            ranked.add(result.get());
+        }
+        ranked.sort(Comparator.comparing((Candidate candidate) -> candidate.stoppedEarly)
+                .thenComparing(Candidate::mean, Comparator.reverseOrder()));
+        return ranked;
+    }
+
+    /**
+     * Plays a candidate's games in batches, stopping once it is clearly worse than the incumbent. After each batch, the
+     * differences between the candidate's and the incumbent's scores on the same seeds are averaged; if the average
+     * stays negative even after adding STOP_Z standard errors, the candidate stops.
+     *
+     * @param candidate The Candidate to play
+     * @param incumbent The incumbent Candidate, with all of its games played
+     * @param gameSeeds The seeds of the games
+     * @return The candidate, with its scores filled in
+     */
+    private Candidate race(Candidate candidate, Candidate incumbent, long[] gameSeeds) {
+        HeuristicPolicy policy = new HeuristicPolicy(candidate.weights);
+        while (candidate.played < gameSeeds.length) {
+            int end = Math.min(gameSeeds.length, candidate.played + BATCH_GAMES);
+            for (int g = candidate.played; g < end; g++) {
+                candidate.scores[g] = policy.playGame(numRows, numColumns, gameSeeds[g], MAX_MOVES);
+            }
+            candidate.played = end;
+            if (candidate.played < MIN_GAMES || candidate.played == gameSeeds.length) {
+                continue;
+            }
+            // Computes the mean and standard error of the paired differences
+            double sum = 0, sumSquares = 0;
+            for (int g = 0; g < candidate.played; g++) {
+                double difference = candidate.scores[g] - incumbent.scores[g];
+                sum += difference;
+                sumSquares += difference * difference;
+            }
+            int n = candidate.played;
+            double mean = sum / n;
+            double variance = Math.max(0, (sumSquares - n * mean * mean) / (n - 1));
+            if (mean + STOP_Z * Math.sqrt(variance / n) < 0) {
+                candidate.stoppedEarly = true;
+                break;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Breeds the next generation from the ranked candidates
+     *
+     * @param ranked The candidates of this generation, best first
+     * @return The weight vectors of the next generation, with the best ones first
+     */
+    private double[][] breed(List<Candidate> ranked) {
+        Random random = new Random(seed * 131 + generation);
+        double[][] next = new double[populationSize][];
+        for (int c = 0; c < ELITE_COUNT; c++) {
+            next[c] = ranked.get(c).weights.clone();
+        }
+        for (int c = ELITE_COUNT; c < populationSize; c++) {
+            double[] first = tournament(ranked, random).weights;
+            double[] second = tournament(ranked, random).weights;
+            // Blends the parents at a random point between them, one weight at a time
+            double[] child = new double[HeuristicPolicy.NUM_FEATURES];
+            for (int w = 0; w < child.length; w++) {
+                double blend = random.nextDouble();
+                child[w] = blend * first[w] + (1 - blend) * second[w];
+            }
+            next[c] = mutate(child, random);
+        }
+        return next;
+    }
+
+    /**
+     * Picks the best of TOURNAMENT_SIZE random candidates
+     *
+     * @param ranked The candidates, best first
+     * @param random The random generator of the generation
+     * @return The winning Candidate
+     */
+    private static Candidate tournament(List<Candidate> ranked, Random random) {
+        // Since the list is ranked, the smallest index drawn is the best candidate drawn
+        int best = ranked.size();
+        for (int i = 0; i < TOURNAMENT_SIZE; i++) {
+            best = Math.min(best, random.nextInt(ranked.size()));
+        }
+        return ranked.get(best);
+    }
+
+    /**
+     * Returns a copy of the weights with Gaussian noise of the current mutation size added
+     *
+     * @param weights The weights to mutate
+     * @param random  The random generator to use
+     * @return A new double[] array with the mutated weights
+     */
+    private double[] mutate(double[] weights, Random random) {
+        double[] mutated = weights.clone();
+        for (int w = 0; w < mutated.length; w++) {
+            mutated[w] += random.nextGaussian() * sigma;
+        }
+        return mutated;
+    }
+
+    /**
+     * Writes the state of the run to the checkpoint file, replacing it atomically so a crash cannot leave half of one
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void saveCheckpoint() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("rows", String.valueOf(numRows));
+        properties.setProperty("columns", String.valueOf(numColumns));
+        properties.setProperty("seed", String.valueOf(seed));
+        properties.setProperty("populationSize", String.valueOf(populationSize));
+        properties.setProperty("generation", String.valueOf(generation));
+        properties.setProperty("sigma", String.valueOf(sigma));
+        properties.setProperty("bestFitness", String.valueOf(bestFitness));
+        properties.setProperty("bestWeights", format(bestWeights));
+        for (int c = 0; c < populationSize; c++) {
+            properties.setProperty("population." + c, format(population[c]));
+        }
+        Path absolute = checkpoint.toAbsolutePath();
+        Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary)) {
+            properties.store(writer, "HeuristicTuner checkpoint, weights in order " + String.join(",", HeuristicPolicy.FEATURE_NAMES));
+        }
+        Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the state of the run from the checkpoint file
+     *
+     * @throws IOException if the file cannot be read or was made with different settings
+     */
+    private void loadCheckpoint() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpoint)) {
+            properties.load(reader);
+        }
+        if (Integer.parseInt(properties.getProperty("rows")) != numRows
+                || Integer.parseInt(properties.getProperty("columns")) != numColumns
+                || Long.parseLong(properties.getProperty("seed")) != seed
+                || Integer.parseInt(properties.getProperty("populationSize")) != populationSize) {
+            throw new IOException("Checkpoint " + checkpoint + " was made with different settings");
+        }
+        generation = Integer.parseInt(properties.getProperty("generation"));
+        sigma = Double.parseDouble(properties.getProperty("sigma"));
+        bestFitness = Double.parseDouble(properties.getProperty("bestFitness"));
+        bestWeights = parse(properties.getProperty("bestWeights"));
+        population = new double[populationSize][];
+        for (int c = 0; c < populationSize; c++) {
+            population[c] = parse(properties.getProperty("population." + c));
+        }
+    }
+
+    /**
+     * Formats a weight vector as comma-separated numbers
+     *
+     * @param weights The weights
+     * @return A String such as "2.7,1.0,1.0,0.7"
+     */
+    private static String format(double[] weights) {
+        StringBuilder text = new StringBuilder();
+        for (int w = 0; w < weights.length; w++) {
+            text.append(w == 0 ? "" : ",").append(weights[w]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Parses a weight vector written by format()
+     *
+     * @param text The comma-separated numbers
+     * @return A double[] array with the weights
+     */
+    private static double[] parse(String text) {
+        return Arrays.stream(text.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    /**
+     * A weight vector and the scores of the games it has played this generation.
+     */
+    private final class Candidate {
+        // Stores the weights of the candidate
+        private final double[] weights;
+        // Stores the score of each game, by game number
+        private final long[] scores = new long[gamesPerCandidate];
+        // Stores the number of games played
+        private int played;
+        // Stores if the candidate stopped before playing every game
+        private boolean stoppedEarly;
+
+        /**
+         * Creates a candidate that has not played yet.
+         *
+         * @param weights The weights of the candidate
+         */
+        Candidate(double[] weights) {
+            this.weights = weights;
+        }
+
+        /**
+         * Returns the mean score of the games played
+         *
+         * @return The mean score, or 0 if no games have been played
+         */
+        double mean() {
+            long sum = 0;
+            for (int g = 0; g < played; g++) {
+                sum += scores[g];
+            }
+            return played == 0 ? 0 : (double) sum / played;
+        }
+    }
+}
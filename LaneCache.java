@@ -0,0 +1,405 @@
+import java.util.Arrays;
+
+/**
+ * LaneCache.java remembers what happens when a lane (a row or column, ordered so that index 0 is the side the tiles
+ * slide towards) is slid, so that lanes that come up again, which they constantly do across rows and turns, become a
+ * lookup instead of a recomputation. It works for lanes of any length.
+ *
+ * <p>A lane is packed into a key of longs holding the exponent code (see GameEngine.toExponent()) of each cell in 5
+ * bits, 12 cells per long. Each entry stores the resulting lane, the score gained and whether the lane changed or
+ * merged. The cache is split into sets of WAYS entries each; a key can only live in the set its hash points to, and
+ * when the set is full the CLOCK algorithm picks the entry to replace: entries that were hit since the clock hand last
+ * passed them get a second chance.
+ *
+ * <p>A LaneCache is not thread-safe. forCurrentThread() gives each thread its own caches, which the engines running on
+ * that thread share. Boards with true diagonal moves or blocked cells have lanes of many lengths, each with its own
+ * cache, so forCurrentThread() keeps every cache under MAX_CACHE_BYTES and all of a thread's caches under
+ * THREAD_CACHE_BYTES; once a thread's budget is spent, new lengths get a cache of a single set.
+ */
+public class LaneCache {
+    // Stores the number of bits used for each cell of a packed lane
+    private static final int BITS_PER_CELL = 5;
+    // Stores the number of cells packed into each long
+    private static final int CELLS_PER_WORD = 12;
+    // Stores the number of entries in each set
+    private static final int WAYS = 8;
+    // Stores the largest number of entries in the caches made by forCurrentThread()
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    // Stores the largest number of bytes one cache made by forCurrentThread() may take
+    public static final long MAX_CACHE_BYTES = 512 * 1024;
+    // Stores the number of bytes the caches made by forCurrentThread() may take together on one thread
+    public static final long THREAD_CACHE_BYTES = 8 * 1024 * 1024;
+    // Stores the bits of the entry flags
+    private static final byte VALID = 1;
+    private static final byte CHANGED = 2;
+    private static final byte MERGED = 4;
+    private static final byte REFERENCED = 8;
+
+    // Stores each thread's caches and the bytes they may still take
+    private static final ThreadLocal<ThreadCaches> THREAD_CACHES = ThreadLocal.withInitial(ThreadCaches::new);
+
+    // Stores the number of cells in the lanes this cache holds
+    private final int laneLength;
+    // Stores the number of longs in a packed lane
+    private final int words;
+    // Stores the number of sets minus one, used as a mask since the number of sets is a power of two
+    private final int setMask;
+    // Stores the packed lane of every entry, words longs per entry
+    private final long[] keys;
+    // Stores the packed resulting lane of every entry, words longs per entry
+    private final long[] results;
+    // Stores the score gained by every entry
+    private final int[] scores;
+    // Stores the VALID, CHANGED, MERGED and REFERENCED flags of every entry
+    private final byte[] flags;
+    // Stores the position of the clock hand in every set
+    private final byte[] hands;
+    // Stores the lane being looked up, packed
+    private final long[] probe;
+    // Stores the number of lookups that were found and not found, and the number of entries replaced
+    private long hits, misses, evictions;
+    // Stores the score gained by the lane passed to the last call of slide()
+    private int lastScore;
+    // Stores if the lane passed to the last call of slide() merged any tiles
+    private boolean lastMerged;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param laneLength The number of cells in the lanes this cache holds
+     * @param capacity   The largest number of entries, rounded up to a power of two of at least WAYS
+     */
+    public LaneCache(int laneLength, int capacity) {
+        if (laneLength < 1) {
+            throw new IllegalArgumentException("Lanes need at least one cell");
+        }
+        this.laneLength = laneLength;
+        words = (laneLength + CELLS_PER_WORD - 1) / CELLS_PER_WORD;
+        // Rounds the number of sets up to a power of two so a hash can be turned into a set with a mask
+        int neededSets = Math.max(1, (capacity + WAYS - 1) / WAYS);
+        int sets = Integer.highestOneBit(neededSets);
+        if (sets < neededSets) {
+            sets <<= 1;
+        }
+        setMask = sets - 1;
+        int entries = sets * WAYS;
+        keys = new long[entries * words];
+        results = new long[entries * words];
+        scores = new int[entries];
+        flags = new byte[entries];
+        hands = new byte[sets];
+        probe = new long[words];
+    }
+
+    /**
+     * Returns the current thread's cache for lanes of the given length, creating it the first time. A new cache holds
+     * at most DEFAULT_CAPACITY entries and MAX_CACHE_BYTES, and only what is left of the thread's THREAD_CACHE_BYTES,
+     * but always at least one set.
+     *
+     * @param laneLength The number of cells in the lanes
+     * @return The LaneCache of the current thread for that length
+     */
+    public static LaneCache forCurrentThread(int laneLength) {
+        ThreadCaches caches = THREAD_CACHES.get();
+        if (laneLength < caches.byLength.length && caches.byLength[laneLength] != null) {
+            return caches.byLength[laneLength];
+        }
+        if (laneLength >= caches.byLength.length) {
+            caches.byLength = Arrays.copyOf(caches.byLength, Math.max(laneLength + 1, caches.byLength.length * 2));
+        }
+        long entryBytes = getEntryBytes(laneLength);
+        long affordable = Math.min(MAX_CACHE_BYTES, caches.bytesLeft) / entryBytes;
+        // Rounds down to a power of two so the cache never takes more than it was given, except for its first set
+        int capacity = (int) Math.max(WAYS, Long.highestOneBit(Math.min(DEFAULT_CAPACITY, affordable)));
+        LaneCache cache = new LaneCache(laneLength, capacity);
+        caches.bytesLeft = Math.max(0, caches.bytesLeft - cache.getCapacity() * entryBytes);
+        caches.byLength[laneLength] = cache;
+        return cache;
+    }
+
+    /**
+     * Returns the number of bytes each entry of a cache takes
+     *
+     * @param laneLength The number of cells in the lanes
+     * @return A long with the bytes of the key, result, score and flags of an entry
+     */
+    private static long getEntryBytes(int laneLength) {
+        long words = (laneLength + CELLS_PER_WORD - 1) / CELLS_PER_WORD;
+        return 2 * words * Long.BYTES + Integer.BYTES + 1;
+    }
+
+    /**
+     * Returns the number of cells in the lanes this cache holds
+     *
+     * @return An int with the lane length
+     */
+    public int getLaneLength() {
+        return laneLength;
+    }
+
+    /**
+     * Returns the number of entries the cache can hold
+     *
+     * @return An int with the capacity
+     */
+    public int getCapacity() {
+        return flags.length;
+    }
+
+    /**
+     * Returns the number of lookups that were found in the cache
+     *
+     * @return A long with the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that were not found in the cache
+     *
+     * @return A long with the number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries that were replaced to make room for new ones
+     *
+     * @return A long with the number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the fraction of lookups that were found in the cache
+     *
+     * @return A double between 0 and 1, or 0 if nothing has been looked up
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the score gained by the lane passed to the last call of slide()
+     *
+     * @return An int with the sum of the tiles created by merges
+     */
+    public int getLastScore() {
+        return lastScore;
+    }
+
+    /**
+     * Returns if the lane passed to the last call of slide() merged any tiles
+     *
+     * @return true if a merge happened, false if not
+     */
+    public boolean getLastMerged() {
+        return lastMerged;
+    }
+
+    /**
+     * Slides a lane towards index 0, looking the result up in the cache first. The score gained and whether anything
+     * merged are available from getLastScore() and getLastMerged() afterwards.
+     *
+     * @param values The tile values of the lane, at least getLaneLength() long, which are updated in place. Every value
+     *               must be 0 or a power of two (see GameEngine.isTileValue()), since lanes are keyed by exponent codes
+     * @return true if the lane changed, false if not
+     */
+    public boolean slide(int[] values) {
+        pack(values, probe, 0);
+        int set = hashProbe() & setMask;
+        int first = set * WAYS;
+        // Looks for the key in its set
+        for (int slot = first; slot < first + WAYS; slot++) {
+            if ((flags[slot] & VALID) != 0 && keyMatches(slot)) {
+                hits++;
+                flags[slot] |= REFERENCED;
+                lastScore = scores[slot];
+                lastMerged = (flags[slot] & MERGED) != 0;
+                if ((flags[slot] & CHANGED) == 0) {
+                    return false;
+                }
+                unpack(slot, values);
+                return true;
+            }
+        }
+        // Computes the lane on a miss and stores it in the slot chosen by the clock hand
+        misses++;
+        boolean changed = slideLane(values, laneLength);
+        int slot = chooseVictim(set);
+        System.arraycopy(probe, 0, keys, slot * words, words);
+        if (changed) {
+            pack(values, results, slot * words);
+        }
+        scores[slot] = lastScore;
+        flags[slot] = (byte) (VALID | (changed ? CHANGED : 0) | (lastMerged ? MERGED : 0));
+        return changed;
+    }
+
+    /**
+     * Removes every entry and resets the counters.
+     */
+    public void clear() {
+        Arrays.fill(flags, (byte) 0);
+        Arrays.fill(hands, (byte) 0);
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Picks the slot in a set to store a new entry in, using the set's clock hand
+     *
+     * @param set The number of the set
+     * @return The index of the slot
+     */
+    private int chooseVictim(int set) {
+        int first = set * WAYS;
+        // Sweeps the hand around the set, clearing REFERENCED flags, until it finds an empty or unreferenced slot
+        while (true) {
+            int slot = first + hands[set];
+            hands[set] = (byte) ((hands[set] + 1) % WAYS);
+            if ((flags[slot] & VALID) == 0) {
+                return slot;
+            }
+            if ((flags[slot] & REFERENCED) == 0) {
+                evictions++;
+                return slot;
+            }
+            flags[slot] &= ~REFERENCED;
+        }
+    }
+
+    /**
+     * Returns a hash of the probe key
+     *
+     * @return An int with the hash
+     */
+    private int hashProbe() {
+        long hash = laneLength;
+        for (int w = 0; w < words; w++) {
+            hash = (hash ^ probe[w]) * 0x9E3779B97F4A7C15L;
+        }
+        hash ^= hash >>> 29;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Checks if the key of a slot is the probe key
+     *
+     * @param slot The index of the slot
+     * @return true if the keys are equal, false if not
+     */
+    private boolean keyMatches(int slot) {
+        int base = slot * words;
+        for (int w = 0; w < words; w++) {
+            if (keys[base + w] != probe[w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Packs a lane into words longs of an array
+     *
+     * @param values      The tile values of the lane
+     * @param destination The array to write the packed lane into
+     * @param base        The index of the first long to write
+     */
+    private void pack(int[] values, long[] destination, int base) {
+        for (int w = 0; w < words; w++) {
+            long word = 0;
+            int end = Math.min(laneLength, (w + 1) * CELLS_PER_WORD);
+            for (int i = w * CELLS_PER_WORD; i < end; i++) {
+                word |= (long) GameEngine.toExponent(values[i]) << ((i % CELLS_PER_WORD) * BITS_PER_CELL);
+            }
+            destination[base + w] = word;
+        }
+    }
+
+    /**
+     * Unpacks the result of a slot into a lane
+     *
+     * @param slot   The index of the slot
+     * @param values The array to write the tile values into
+     */
+    private void unpack(int slot, int[] values) {
+        int base = slot * words;
+        long mask = (1L << BITS_PER_CELL) - 1;
+        for (int i = 0; i < laneLength; i++) {
+            long word = results[base + i / CELLS_PER_WORD];
+            values[i] = GameEngine.fromExponent((int) ((word >>> ((i % CELLS_PER_WORD) * BITS_PER_CELL)) & mask));
+        }
+    }
+
+    /**
+     * Checks if a lane has room to slide towards index 0
+     *
+     * @param values The values in the lane
+     * @param length The number of values in the lane
+     * @return true if a tile can move or merge, false if not
+     */
+    private static boolean canSlideLane(int[] values, int length) {
+        for (int i = 1; i < length; i++) {
+            if (values[i] != 0 && (values[i - 1] == 0 || values[i] == values[i - 1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Slides a lane towards index 0, merging like values. As in GameLogic, merging and shifting is repeated until
+     * nothing else can move, so a merged tile can merge again during the same move. The score and merged flag of the
+     * lane are left in lastScore and lastMerged.
+     *
+     * @param values The values in the lane, which are updated in place
+     * @param length The number of values in the lane
+     * @return true if the lane changed, false if not
+     */
+    private boolean slideLane(int[] values, int length) {
+        lastMerged = false;
+        lastScore = 0;
+        if (!canSlideLane(values, length)) {
+            return false;
+        }
+        while (canSlideLane(values, length)) {
+            // Merges similar adjacent values towards index 0
+            for (int i = 0; i < length - 1; i++) {
+                if (values[i] != 0 && values[i] == values[i + 1]) {
+                    values[i] += values[i + 1];
+                    values[i + 1] = 0;
+                    lastScore += values[i];
+                    lastMerged = true;
+                    i++;
+                }
+            }
+            // Shifts all non-zero values towards index 0 and fills the rest of the lane with 0
+            int nextEmptyIndex = 0;
+            for (int i = 0; i < length; i++) {
+                if (values[i] != 0) {
+                    values[nextEmptyIndex++] = values[i];
+                }
+            }
+            for (int i = nextEmptyIndex; i < length; i++) {
+                values[i] = 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Holds the caches forCurrentThread() made for one thread
+     */
+    private static final class ThreadCaches {
+        // Stores the cache for each lane length, or null if none was made yet
+        private LaneCache[] byLength = new LaneCache[0];
+        // Stores the number of bytes new caches may still take
+        private long bytesLeft = THREAD_CACHE_BYTES;
+    }
+}
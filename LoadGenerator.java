@@ -0,0 +1,266 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * LoadGenerator.java plays many games at once against a GameServer on localhost and reports the move latency seen by
+ * the clients (p50, p99 and max) along with the number of moves and sessions started per second. Each client thread
+ * keeps its own copy of the board, which it updates from the BOARD_DIFF replies, and checks every reply against it: the
+ * cells must be on the board, the exponents must be tile values, the score may not go down, and a board with an empty
+ * cell cannot be over. A reply that fails a check stops the client and is reported as a failure.
+ *
+ * <p>Usage: {@code java LoadGenerator [port|embedded] [clients] [seconds] [rows] [columns] [spawnRule]}. With
+ * "embedded", a server is started in the same JVM on a free port. The spawn rule (see SpawnRule.parse()) is sent with
+ * every new game; "1/500", for example, places one tile per 500 cells. Games end after MAX_MOVES_PER_GAME moves even
+ * if they are not over, which bounds the length of games on large boards.
+ */
+public class LoadGenerator {
+    // Stores the number of moves after which a client gives up on a game and starts a new one
+    private static final int MAX_MOVES_PER_GAME = 5000;
+
+    /**
+     * Runs the load test from the command line
+     *
+     * @param args The port (or "embedded"), number of clients, duration in seconds, rows, columns and spawn rule, all
+     *             optional
+     * @throws Exception if the server cannot be reached or a client fails
+     */
+    public static void main(String[] args) throws Exception {
+        String target = args.length > 0 ? args[0] : String.valueOf(GameServer.DEFAULT_PORT);
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int rows = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        int columns = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        // Parses the rule here, so a mistake is reported before any client starts
+        SpawnRule spawnRule = args.length > 5 ? SpawnRule.parse(args[5]) : SpawnRule.CLASSIC;
+        GameServer embeddedServer = null;
+        int port;
+        if (target.equals("embedded")) {
+            embeddedServer = new GameServer(0, Runtime.getRuntime().availableProcessors());
+            port = embeddedServer.getPort();
+        } else {
+            port = Integer.parseInt(target);
+        }
+        System.out.println("Running " + clients + " clients for " + seconds + "s on " + rows + " x " + columns
+                + " boards (spawn rule " + spawnRule + ") against localhost:" + port);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        // Starts the clients, each on its own connection
+        List<Client> clientList = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(port, rows, columns, spawnRule, i, deadline);
+            clientList.add(client);
+            client.start();
+        }
+        long start = System.nanoTime();
+        for (Client client : clientList) {
+            client.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (embeddedServer != null) {
+            embeddedServer.close();
+        }
+        report(clientList, elapsed);
+    }
+
+    /**
+     * Prints the combined results of all the clients
+     *
+     * @param clientList The clients that have finished
+     * @param elapsed    The duration of the test in seconds
+     */
+    private static void report(List<Client> clientList, double elapsed) {
+        // Gathers the latencies of every client into one sorted array
+        int total = 0;
+        long sessions = 0;
+        for (Client client : clientList) {
+            if (client.failure != null) {
+                System.err.println(client.getName() + " failed: " + client.failure);
+            }
+            total += client.latencyCount;
+            sessions += client.sessions;
+        }
+        long[] latencies = new long[total];
+        int offset = 0;
+        for (Client client : clientList) {
+            System.arraycopy(client.latencies, 0, latencies, offset, client.latencyCount);
+            offset += client.latencyCount;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("moves: %d (%.0f/s)%n", total, total / elapsed);
+        System.out.printf("sessions: %d (%.1f/s)%n", sessions, sessions / elapsed);
+        if (total > 0) {
+            System.out.printf("move latency: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                    percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3, latencies[total - 1] / 1e3);
+        }
+    }
+
+    /**
+     * Returns a percentile of a sorted array
+     *
+     * @param sorted   A sorted, non-empty array
+     * @param fraction The percentile as a fraction between 0 and 1
+     * @return The value at that percentile
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * A client thread that plays random games over its own connection until the deadline.
+     */
+    private static final class Client extends Thread {
+        // Stores the port of the server
+        private final int port;
+        // Stores the size of the boards to play on
+        private final int numRows, numColumns;
+        // Stores the spawn rule sent with each new game, as UTF-8 text
+        private final byte[] spawnRule;
+        // Stores the time at which the client stops, from System.nanoTime()
+        private final long deadline;
+        // Stores the random generator used for game seeds and moves
+        private final Random random;
+        // Stores the client's copy of the board as exponent codes
+        private final byte[] board;
+        // Stores the number of empty cells in the client's copy of the board
+        private int emptyCount;
+        // Stores the score of the last BOARD_DIFF reply
+        private long lastScore;
+        // Stores the measured move latencies in nanoseconds
+        private long[] latencies = new long[1024];
+        // Stores the number of entries in latencies
+        private int latencyCount;
+        // Stores the number of games started
+        private long sessions;
+        // Stores the flags of the last BOARD_DIFF reply
+        private int lastFlags;
+        // Stores the reason the client stopped early, or null
+        private volatile String failure;
+
+        /**
+         * Creates a client.
+         *
+         * @param port     The port of the server
+         * @param rows     The number of rows on the boards
+         * @param columns  The number of columns on the boards
+         * @param rule     The SpawnRule of the games
+         * @param id       The number of the client, used as its seed and in its name
+         * @param deadline The time at which to stop, from System.nanoTime()
+         */
+        Client(int port, int rows, int columns, SpawnRule rule, int id, long deadline) {
+            super("load-client-" + id);
+            this.port = port;
+            numRows = rows;
+            numColumns = columns;
+            spawnRule = rule.toString().getBytes(StandardCharsets.UTF_8);
+            this.deadline = deadline;
+            random = new Random(id);
+            board = new byte[rows * columns];
+        }
+
+        @Override
+        public void run() {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (System.nanoTime() < deadline) {
+                    // Starts a new game and clears the local copy of the board before applying the first diff
+                    out.writeInt(1 + 2 + 2 + 8 + 2 + spawnRule.length);
+                    out.writeByte(GameServer.NEW_GAME);
+                    out.writeShort(numRows);
+                    out.writeShort(numColumns);
+                    out.writeLong(random.nextLong());
+                    out.writeShort(spawnRule.length);
+                    out.write(spawnRule);
+                    out.flush();
+                    Arrays.fill(board, (byte) 0);
+                    emptyCount = board.length;
+                    lastScore = 0;
+                    readDiff(in);
+                    sessions++;
+                    // Plays random moves until the game is over, the game gets too long or the time is up
+                    for (int moves = 0; moves < MAX_MOVES_PER_GAME && (lastFlags & GameServer.FLAG_GAME_OVER) == 0
+                            && System.nanoTime() < deadline; moves++) {
+                        long start = System.nanoTime();
+                        out.writeInt(2);
+                        out.writeByte(GameServer.MOVE);
+                        out.writeByte(random.nextInt(Direction.values().length));
+                        out.flush();
+                        readDiff(in);
+                        record(System.nanoTime() - start);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Records anything that stops the client, so the report does not show a healthy run
+                failure = e.toString();
+            }
+        }
+
+        /**
+         * Reads a BOARD_DIFF frame, applies it to the local board and checks it against the board
+         *
+         * @param in The stream from the server
+         * @throws IOException if the connection fails, the server sends an error or the reply does not fit the board
+         */
+        private void readDiff(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            byte type = in.readByte();
+            if (type == GameServer.ERROR) {
+                byte[] message = new byte[in.readUnsignedShort()];
+                in.readFully(message);
+                throw new IOException("Server error: " + new String(message, StandardCharsets.UTF_8));
+            }
+            if (type != GameServer.BOARD_DIFF) {
+                throw new IOException("Unexpected message type " + type + " of length " + length);
+            }
+            lastFlags = in.readByte();
+            long score = in.readLong();
+            if (score < lastScore) {
+                throw new IOException("Score went down from " + lastScore + " to " + score);
+            }
+            lastScore = score;
+            int count = in.readInt();
+            if (count < 0 || count > board.length) {
+                throw new IOException("Diff of " + count + " cells on a board of " + board.length);
+            }
+            for (int i = 0; i < count; i++) {
+                int index = in.readInt();
+                byte exponent = in.readByte();
+                if (index < 0 || index >= board.length) {
+                    throw new IOException("Diff cell " + index + " is off a board of " + board.length);
+                }
+                // Exponent codes go up to 31, the code of the largest tile value 2^30
+                if (exponent < 0 || exponent > Integer.SIZE - 1) {
+                    throw new IOException("Diff cell " + index + " has the invalid exponent " + exponent);
+                }
+                emptyCount += (exponent == 0 ? 1 : 0) - (board[index] == 0 ? 1 : 0);
+                board[index] = exponent;
+            }
+            if ((lastFlags & GameServer.FLAG_GAME_OVER) != 0 && emptyCount > 0) {
+                throw new IOException("Game reported over with " + emptyCount + " empty cells");
+            }
+        }
+
+        /**
+         * Records a move latency
+         *
+         * @param nanos The latency in nanoseconds
+         */
+        private void record(long nanos) {
+            if (latencyCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencyCount * 2);
+            }
+            latencies[latencyCount++] = nanos;
+        }
+    }
+}
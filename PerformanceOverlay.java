@@ -0,0 +1,350 @@
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * PerformanceOverlay.java draws a small panel over the game board showing where the time goes: frames per second, the
+ * length of each frame and of each JavaFX pulse up to the end of layout, the time spent in GameLogic (including placing
+ * the new tile) versus SlideGameUI.renderBoard() for each move, the number of nodes in the scene and the garbage
+ * collections so far. Samples go into fixed-size ring buffers and the panel is redrawn a few times a second, so the
+ * overlay costs little while it is shown and nothing while it is hidden.
+ */
+public class PerformanceOverlay extends Canvas {
+    // Stores the size of the panel in pixels
+    private static final double WIDTH = 250;
+    private static final double HEIGHT = 170;
+    // Stores the number of samples kept for each sparkline
+    private static final int HISTORY = 120;
+    // Stores how often the panel is redrawn and the nodes are counted, in nanoseconds
+    private static final long REDRAW_INTERVAL = 250_000_000L;
+    private static final long NODE_COUNT_INTERVAL = 1_000_000_000L;
+
+    // Stores the scene whose pulses are measured
+    private final Scene scene;
+    // Stores the time between frames, the pulse time up to the end of layout, and the layout time, in nanoseconds
+    private final RingBuffer frameTimes = new RingBuffer(HISTORY);
+    private final RingBuffer pulseTimes = new RingBuffer(HISTORY);
+    private final RingBuffer layoutTimes = new RingBuffer(HISTORY);
+    // Stores the time each move spent in GameLogic and in renderBoard(), in nanoseconds
+    private final RingBuffer logicTimes = new RingBuffer(HISTORY);
+    private final RingBuffer guiTimes = new RingBuffer(HISTORY);
+    // Stores the garbage collectors of the JVM
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    // Stores the timer that runs at the start of every pulse while the overlay is shown
+    private final AnimationTimer timer;
+    // Stores the pulse listeners that time the CSS and layout pass
+    private final Runnable preLayoutListener = this::beforeLayout;
+    private final Runnable postLayoutListener = this::afterLayout;
+    // Stores the start of the last frame, pulse and layout pass, and the time of the last redraw and node count
+    private long lastFrame, pulseStart, layoutStart, lastRedraw, lastNodeCount;
+    // Stores the number of nodes in the scene at the last count
+    private int nodeCount;
+    // Stores the garbage collection count and time when the overlay was shown
+    private long gcCountBaseline, gcTimeBaseline;
+
+    /**
+     * Creates a hidden overlay for a scene.
+     *
+     * @param scene The Scene whose pulses and nodes are measured
+     */
+    public PerformanceOverlay(Scene scene) {
+        super(WIDTH, HEIGHT);
+        this.scene = scene;
+        setMouseTransparent(true);
+        setManaged(false);
+        setVisible(false);
+        timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                onFrame();
+            }
+        };
+    }
+
+    /**
+     * Shows the overlay if it is hidden, or hides it if it is shown.
+     */
+    public void toggle() {
+        setShowing(!isVisible());
+    }
+
+    /**
+     * Shows or hides the overlay, starting or stopping the sampling with it
+     *
+     * @param showing true to show the overlay, false to hide it
+     */
+    public void setShowing(boolean showing) {
+        if (showing == isVisible()) {
+            return;
+        }
+        setVisible(showing);
+        if (showing) {
+            gcCountBaseline = gcCount();
+            gcTimeBaseline = gcTime();
+            lastFrame = 0;
+            lastNodeCount = 0;
+            scene.addPreLayoutPulseListener(preLayoutListener);
+            scene.addPostLayoutPulseListener(postLayoutListener);
+            timer.start();
+        } else {
+            timer.stop();
+            scene.removePreLayoutPulseListener(preLayoutListener);
+            scene.removePostLayoutPulseListener(postLayoutListener);
+        }
+    }
+
+    /**
+     * Records the time a move spent in the game logic and in updating the GUI
+     *
+     * @param logicNanos The time spent in the GameLogic merge function and placing the new tile, in nanoseconds
+     * @param guiNanos   The time spent in renderBoard(), in nanoseconds
+     */
+    public void recordMove(long logicNanos, long guiNanos) {
+        if (isVisible()) {
+            logicTimes.add(logicNanos);
+            guiTimes.add(guiNanos);
+        }
+    }
+
+    /**
+     * Records the start of a frame, and redraws the panel when it is due.
+     */
+    private void onFrame() {
+        long now = System.nanoTime();
+        if (lastFrame != 0) {
+            frameTimes.add(now - lastFrame);
+        }
+        lastFrame = now;
+        // The animation timer runs at the start of the pulse, before CSS and layout
+        pulseStart = now;
+        if (now - lastNodeCount >= NODE_COUNT_INTERVAL) {
+            nodeCount = countNodes(scene.getRoot());
+            lastNodeCount = now;
+        }
+        if (now - lastRedraw >= REDRAW_INTERVAL) {
+            draw();
+            lastRedraw = now;
+        }
+    }
+
+    /**
+     * Records the start of the CSS and layout pass of a pulse.
+     */
+    private void beforeLayout() {
+        layoutStart = System.nanoTime();
+    }
+
+    /**
+     * Records the end of the CSS and layout pass of a pulse.
+     */
+    private void afterLayout() {
+        long now = System.nanoTime();
+        layoutTimes.add(now - layoutStart);
+        if (pulseStart != 0) {
+            pulseTimes.add(now - pulseStart);
+            pulseStart = 0;
+        }
+    }
+
+    /**
+     * Counts the nodes in a part of the scene graph
+     *
+     * @param node The Node to start counting from
+     * @return The number of nodes, including the given one
+     */
+    private static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent parent) {
+            for (Node child : parent.getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of garbage collections since the JVM started
+     *
+     * @return A long with the number of collections
+     */
+    private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time spent in garbage collection since the JVM started
+     *
+     * @return A long with the time in milliseconds
+     */
+    private long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * Draws the numbers and sparklines onto the panel.
+     */
+    private void draw() {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, WIDTH, HEIGHT);
+        gc.setFill(Color.rgb(0, 0, 0, 0.75));
+        gc.fillRoundRect(0, 0, WIDTH, HEIGHT, 8, 8);
+        gc.setFont(Font.font("Monospaced", 11));
+        double frameMillis = frameTimes.average() / 1e6;
+        // Writes one line per measurement
+        String[] lines = {
+                String.format("%.0f fps  frame %.1f ms (max %.1f)", frameMillis > 0 ? 1000 / frameMillis : 0, frameMillis, frameTimes.max() / 1e6),
+                String.format("pulse %.2f ms  layout %.2f ms", pulseTimes.average() / 1e6, layoutTimes.average() / 1e6),
+                String.format("move: logic %.2f ms  render %.2f ms", logicTimes.latest() / 1e6, guiTimes.latest() / 1e6),
+                String.format("nodes %d  GC %d (%d ms)", nodeCount, gcCount() - gcCountBaseline, gcTime() - gcTimeBaseline),
+        };
+        gc.setFill(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            gc.fillText(lines[i], 8, 16 + i * 15);
+        }
+        // Draws the frame and pulse times on one sparkline, and the move times on another
+        double frameScale = Math.max(frameTimes.max(), 1);
+        drawSparkline(gc, frameTimes, 8, 80, WIDTH - 16, 36, frameScale, Color.LIMEGREEN);
+        drawSparkline(gc, pulseTimes, 8, 80, WIDTH - 16, 36, frameScale, Color.YELLOW);
+        double moveScale = Math.max(Math.max(logicTimes.max(), guiTimes.max()), 1);
+        drawSparkline(gc, logicTimes, 8, 124, WIDTH - 16, 36, moveScale, Color.ORANGE);
+        drawSparkline(gc, guiTimes, 8, 124, WIDTH - 16, 36, moveScale, Color.DEEPSKYBLUE);
+    }
+
+    /**
+     * Draws the samples of a ring buffer as a line, oldest on the left
+     *
+     * @param gc       The GraphicsContext to draw with
+     * @param buffer   The RingBuffer to draw
+     * @param x        The left edge of the sparkline
+     * @param y        The top edge of the sparkline
+     * @param width    The width of the sparkline
+     * @param height   The height of the sparkline
+     * @param maxValue The value drawn at the top edge
+     * @param color    The Color of the line
+     */
+    private static void drawSparkline(GraphicsContext gc, RingBuffer buffer, double x, double y, double width, double height,
+                                      double maxValue, Color color) {
+        gc.setStroke(Color.rgb(255, 255, 255, 0.2));
+        gc.strokeRect(x, y, width, height);
+        int size = buffer.size();
+        if (size < 2) {
+            return;
+        }
+        gc.setStroke(color);
+        gc.beginPath();
+        for (int i = 0; i < size; i++) {
+            double px = x + width * i / (HISTORY - 1);
+            double py = y + height - height * Math.min(1, buffer.get(i) / maxValue);
+            if (i == 0) {
+                gc.moveTo(px, py);
+            } else {
+                gc.lineTo(px, py);
+            }
+        }
+        gc.stroke();
+    }
+
+    /**
+     * A fixed number of the most recent samples, kept without allocating.
+     */
+    private static final class RingBuffer {
+        // Stores the samples, with the oldest at index start once the buffer has wrapped around
+        private final long[] samples;
+        // Stores the index of the oldest sample and the number of samples
+        private int start, size;
+
+        /**
+         * Creates an empty buffer.
+         *
+         * @param capacity The number of samples kept
+         */
+        RingBuffer(int capacity) {
+            samples = new long[capacity];
+        }
+
+        /**
+         * Adds a sample, replacing the oldest one if the buffer is full
+         *
+         * @param value The sample
+         */
+        void add(long value) {
+            if (size < samples.length) {
+                samples[(start + size++) % samples.length] = value;
+            } else {
+                samples[start] = value;
+                start = (start + 1) % samples.length;
+            }
+        }
+
+        /**
+         * Returns the number of samples
+         *
+         * @return An int with the number of samples
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns a sample, counting from the oldest
+         *
+         * @param i A position between 0 and size() - 1
+         * @return The sample
+         */
+        long get(int i) {
+            return samples[(start + i) % samples.length];
+        }
+
+        /**
+         * Returns the newest sample
+         *
+         * @return The newest sample, or 0 if there are none
+         */
+        long latest() {
+            return size == 0 ? 0 : get(size - 1);
+        }
+
+        /**
+         * Returns the average of the samples
+         *
+         * @return The average, or 0 if there are none
+         */
+        double average() {
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += get(i);
+            }
+            return size == 0 ? 0 : (double) sum / size;
+        }
+
+        /**
+         * Returns the largest sample
+         *
+         * @return The largest sample, or 0 if there are none
+         */
+        long max() {
+            long max = 0;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, get(i));
+            }
+            return max;
+        }
+    }
+}
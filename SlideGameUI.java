@@ -10,6 +10,7 @@ import javafx.scene.control.TextInputDialog;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 
 import java.util.Optional;
@@ -24,6 +25,10 @@ public class SlideGameUI extends Application {
     private static Button[][] buttonArray;
     // Stores the JavaFX GridPane which contains the game board GUI gadgets
     private static final GridPane gameBoard = new GridPane();
+    // Stores the scrollable viewport used instead of the gameBoard when the board does not fit on the screen
+    private static BoardViewport boardViewport;
+    // Stores the overlay that shows frame and move timings, toggled with F3
+    private static PerformanceOverlay performanceOverlay;
 
     /**
      * Returns the 2D buttonArray
@@ -52,11 +57,112 @@ public class SlideGameUI extends Application {
         return gameBoard;
     }
 
+    /**
+     * Returns the boardViewport, or null if the board is shown as a GridPane of buttons
+     *
+     * @return A BoardViewport object, or null
+     */
+    public static BoardViewport getBoardViewport() {
+        return boardViewport;
+    }
+
+    /**
+     * Sets the boardViewport
+     *
+     * @param viewport A BoardViewport object, or null to show the board as a GridPane of buttons
+     */
+    public static void setBoardViewport(BoardViewport viewport) {
+        boardViewport = viewport;
+    }
+
+    /**
+     * Returns the performanceOverlay
+     *
+     * @return A PerformanceOverlay object, or null before the stage is shown
+     */
+    public static PerformanceOverlay getPerformanceOverlay() {
+        return performanceOverlay;
+    }
+
+    /**
+     * Sets the performanceOverlay
+     *
+     * @param overlay A PerformanceOverlay object
+     */
+    public static void setPerformanceOverlay(PerformanceOverlay overlay) {
+        performanceOverlay = overlay;
+    }
+
+    /**
+     * Performs a GameLogic merge function and updates the GUI, timing both for the performanceOverlay. Placing the new
+     * tile is game logic, so it counts towards the logic time even though it happens after the board is redrawn.
+     *
+     * @param merge The GameLogic merge function to perform
+     */
+    public static void performMove(Runnable merge) {
+        long start = System.nanoTime();
+        merge.run();
+        long logicEnd = System.nanoTime();
+        renderBoard();
+        long guiEnd = System.nanoTime();
+        placeNewTile();
+        long spawnEnd = System.nanoTime();
+        if (getPerformanceOverlay() != null) {
+            getPerformanceOverlay().recordMove((logicEnd - start) + (spawnEnd - guiEnd), guiEnd - logicEnd);
+        }
+    }
+
+    /**
+     * Returns the shifting behavior for a cell based on its position on the edge of the board. Corners shift
+     * diagonally, the other edge cells shift towards their edge, and cells inside the board do nothing.
+     *
+     * @param i The row of the cell
+     * @param j The column of the cell
+     * @return An ActionEvent handler that performs the shift, or null if the cell is not on the edge
+     */
+    public static EventHandler<ActionEvent> getShiftActionForCell(int i, int j) {
+        // Stores the index of the last row and the last column on the board
+        int lastRow = GameLogic.getNumRows() - 1;
+        int lastColumn = GameLogic.getNumColumns() - 1;
+        // Assigns diagonal shifts to the corners
+        if (i == 0 && j == 0) {
+            return shiftGUIUpLeft();
+        }
+        if (i == 0 && j == lastColumn) {
+            return shiftGUIUpRight();
+        }
+        if (i == lastRow && j == 0) {
+            return shiftGUIDownLeft();
+        }
+        if (i == lastRow && j == lastColumn) {
+            return shiftGUIDownRight();
+        }
+        // Assigns the shift towards the edge to all other cells on the edge
+        if (j == 0) {
+            return shiftGUILeft();
+        }
+        if (j == lastColumn) {
+            return shiftGUIRight();
+        }
+        if (i == 0) {
+            return shiftGUIUp();
+        }
+        if (i == lastRow) {
+            return shiftGUIDown();
+        }
+        return null;
+    }
+
     /**
      * Creates the buttons for the GUI gameBoard and assigns appropriate shifting behavior to the
      * respective buttons.
      */
     public static void initializeGameBoardGUI() {
+        // Large boards are drawn by the boardViewport, which does not need a button for each cell
+        if (getBoardViewport() != null) {
+            updateGUI();
+            return;
+        }
         // Loops through the buttonArray to assign each button an appropriate action behavior and adds it to the gameBoard
         for (int i = 0; i < getButtonArray().length; i++) {
             for (int j = 0; j < getButtonArray()[i].length; j++) {
@@ -64,38 +170,8 @@ public class SlideGameUI extends Application {
                 getButtonArray()[i][j] = new Button();
                 getButtonArray()[i][j].setPrefSize(50, 50);
                 getButtonArray()[i][j].setFocusTraversable(false);
-                // Assigns shift up-left to top-left corner
-                if (i == 0 && j == 0) {
-                    getButtonArray()[i][j].setOnAction(shiftGUIUpLeft());
-                }
-                // Assigns shift up-right to top-right corner
-                if (i == 0 && j == getButtonArray()[i].length - 1) {
-                    getButtonArray()[i][j].setOnAction(shiftGUIUpRight());
-                }
-                // Assigns shift down-left to bottom-left corner
-                if (i == getButtonArray().length - 1 && j == 0) {
-                    getButtonArray()[i][j].setOnAction(shiftGUIDownLeft());
-                }
-                // Assigns shift down-right to bottom-right corner
-                if (i == getButtonArray().length - 1 && j == getButtonArray()[i].length - 1) {
-                    getButtonArray()[i][j].setOnAction(shiftGUIDownRight());
-                }
-                // Ensures that all the buttons in the left-most column, except corners, are given shiftGUILeft() functionality
-                if ((j == 0) && ((i != 0) && (i != getButtonArray().length - 1))) {
-                    getButtonArray()[i][j].setOnAction(shiftGUILeft());
-                }
-                // Ensures that all the buttons in the right-most column, except corners, are given shiftGUIRight() functionality
-                if ((j == getButtonArray()[i].length - 1) && ((i != 0) && (i != getButtonArray().length - 1))) {
-                    getButtonArray()[i][j].setOnAction(shiftGUIRight());
-                }
-                // Ensures that all the buttons in the up-most row, except corners, are given shiftGUIUp() functionality
-                if ((i == 0) && ((j != 0) && (j != getButtonArray()[i].length - 1))) {
-                    getButtonArray()[i][j].setOnAction(shiftGUIUp());
-                }
-                // Ensures that all the buttons in the bottom-most row, except corners, are given shiftGUIDown() functionality
-                if ((i == getButtonArray().length - 1) && ((j != 0) && (j != getButtonArray()[i].length - 1))) {
-                    getButtonArray()[i][j].setOnAction(shiftGUIDown());
-                }
+                // Assigns the shift for the button's position on the edge of the board
+                getButtonArray()[i][j].setOnAction(getShiftActionForCell(i, j));
                 getGameBoard().add(getButtonArray()[i][j], j, i);
             }
         }
@@ -103,24 +179,46 @@ public class SlideGameUI extends Application {
     }
 
     /**
-     * Gathers the most recent logicArray data and updates the gameBoard buttons appropriately.
+     * Gathers the most recent logicArray data and updates the gameBoard buttons appropriately, then places a new tile
+     * if the last move allowed one.
      */
     public static void updateGUI() {
-        // Loops through the buttonArray to update the text of buttons to the corresponding value in logicArray
-        for (int i = 0; i < getButtonArray().length; i++) {
-            for (int j = 0; j < getButtonArray()[i].length; j++) {
-                if (GameLogic.getLogicArray()[i][j] == 0) {
-                    getButtonArray()[i][j].setText("");
-                } else {
-                    getButtonArray()[i][j].setText("" + GameLogic.getLogicArray()[i][j]);
+        renderBoard();
+        placeNewTile();
+    }
+
+    /**
+     * Shows the logicArray on the board view, either the gameBoard buttons or the boardViewport.
+     */
+    public static void renderBoard() {
+        if (getBoardViewport() != null) {
+            // Redraws only the visible part of the board
+            getBoardViewport().refresh();
+            getBoardViewport().requestFocus();
+        } else {
+            // Loops through the buttonArray to update the text of buttons to the corresponding value in logicArray
+            for (int i = 0; i < getButtonArray().length; i++) {
+                for (int j = 0; j < getButtonArray()[i].length; j++) {
+                    if (GameLogic.getLogicArray()[i][j] == 0) {
+                        getButtonArray()[i][j].setText("");
+                    } else {
+                        getButtonArray()[i][j].setText("" + GameLogic.getLogicArray()[i][j]);
+                    }
                 }
             }
+            // Brings focus back to the keyboard gadget to allow for simultaneous button/key input
+            getGameBoard().requestFocus();
         }
-        // Brings focus back to the keyboard gadget to allow for simultaneous button/key input
-        getGameBoard().requestFocus();
+    }
+
+    /**
+     * Places a new tile if the last move allowed one. It is placed after the board is drawn, so it appears on the board
+     * with the next move.
+     */
+    public static void placeNewTile() {
         // Checks if the random int can be selected
         if (GameLogic.getCanSelectRandomInt()) {
-            GameLogic.selectRandomInt();
+            GameLogic.spawnTiles();
             // Sets the random int to false, preventing an index from being selected if there was no movement on the board
             GameLogic.setCanSelectRandomInt(false);
         }
@@ -173,6 +271,7 @@ public class SlideGameUI extends Application {
                 - Use the arrow keys or W/A/S/D to slide the tiles up, left, down, or right.
                 - Use Q/E to slide the tiles up-left or up-right.
                 - Use X/C to slide the tiles down-left or down-right.
+                - Press F3 to show or hide the performance overlay.
 
                 Click "OK" to start the game. Good luck!""");
         // Displays the alert and waits for the user to acknowledge
@@ -247,8 +346,7 @@ public class SlideGameUI extends Application {
     public static EventHandler<ActionEvent> shiftGUILeft() {
         return e -> {
             if (!GameLogic.isGameOver()) {
-                GameLogic.mergeLeft();
-                updateGUI();
+                performMove(GameLogic::mergeLeft);
             } else {
                 showGameOverDialogBox();
             }
@@ -263,8 +361,7 @@ public class SlideGameUI extends Application {
     public static EventHandler<ActionEvent> shiftGUIRight() {
         return e -> {
             if (!GameLogic.isGameOver()) {
-                GameLogic.mergeRight();
-                updateGUI();
+                performMove(GameLogic::mergeRight);
             } else {
                 showGameOverDialogBox();
             }
@@ -279,8 +376,7 @@ public class SlideGameUI extends Application {
     public static EventHandler<ActionEvent> shiftGUIUp() {
         return e -> {
             if (!GameLogic.isGameOver()) {
-                GameLogic.mergeUp();
-                updateGUI();
+                performMove(GameLogic::mergeUp);
             } else {
                 showGameOverDialogBox();
             }
@@ -295,8 +391,7 @@ public class SlideGameUI extends Application {
     public static EventHandler<ActionEvent> shiftGUIDown() {
         return e -> {
             if (!GameLogic.isGameOver()) {
-                GameLogic.mergeDown();
-                updateGUI();
+                performMove(GameLogic::mergeDown);
             } else {
                 showGameOverDialogBox();
             }
@@ -311,8 +406,7 @@ public class SlideGameUI extends Application {
     public static EventHandler<ActionEvent> shiftGUIUpLeft() {
         return e -> {
             if (!GameLogic.isGameOver()) {
-                GameLogic.mergeUpLeft();
-                updateGUI();
+                performMove(GameLogic::mergeUpLeft);
             } else {
                 showGameOverDialogBox();
             }
@@ -327,8 +421,7 @@ public class SlideGameUI extends Application {
     public static EventHandler<ActionEvent> shiftGUIUpRight() {
         return e -> {
             if (!GameLogic.isGameOver()) {
-                GameLogic.mergeUpRight();
-                updateGUI();
+                performMove(GameLogic::mergeUpRight);
             } else {
                 showGameOverDialogBox();
             }
@@ -343,8 +436,7 @@ public class SlideGameUI extends Application {
     public static EventHandler<ActionEvent> shiftGUIDownLeft() {
         return e -> {
             if (!GameLogic.isGameOver()) {
-                GameLogic.mergeDownLeft();
-                updateGUI();
+                performMove(GameLogic::mergeDownLeft);
             } else {
                 showGameOverDialogBox();
             }
@@ -359,8 +451,7 @@ public class SlideGameUI extends Application {
     public static EventHandler<ActionEvent> shiftGUIDownRight() {
         return e -> {
             if (!GameLogic.isGameOver()) {
-                GameLogic.mergeDownRight();
-                updateGUI();
+                performMove(GameLogic::mergeDownRight);
             } else {
                 showGameOverDialogBox();
             }
@@ -375,47 +466,46 @@ public class SlideGameUI extends Application {
      */
     public static EventHandler<KeyEvent> shiftWithKeyboard() {
         return e -> {
+            // If the F3 key is clicked, show or hide the performance overlay without making a move
+            if (e.getCode() == KeyCode.F3) {
+                if (getPerformanceOverlay() != null) {
+                    getPerformanceOverlay().toggle();
+                }
+                return;
+            }
             // Checks if the came is over and, if true, display the game over dialog box
             if (!GameLogic.isGameOver()) {
                 // If the left arrow key or the A key is clicked, shift left
                 if (e.getCode() == KeyCode.LEFT || e.getCode() == KeyCode.A) {
-                    GameLogic.mergeLeft();
-                    updateGUI();
+                    performMove(GameLogic::mergeLeft);
                 }
                 // If the right arrow key or the D key is clicked, shift right
                 if (e.getCode() == KeyCode.RIGHT || e.getCode() == KeyCode.D) {
-                    GameLogic.mergeRight();
-                    updateGUI();
+                    performMove(GameLogic::mergeRight);
                 }
                 // If the up arrow key or the W key is clicked, shift up
                 if (e.getCode() == KeyCode.UP || e.getCode() == KeyCode.W) {
-                    GameLogic.mergeUp();
-                    updateGUI();
+                    performMove(GameLogic::mergeUp);
                 }
                 // If the down arrow key or the S key is clicked, shift down
                 if (e.getCode() == KeyCode.DOWN || e.getCode() == KeyCode.S) {
-                    GameLogic.mergeDown();
-                    updateGUI();
+                    performMove(GameLogic::mergeDown);
                 }
                 // If the Q key is clicked, shift up and to the left
                 if (e.getCode() == KeyCode.Q) {
-                    GameLogic.mergeUpLeft();
-                    updateGUI();
+                    performMove(GameLogic::mergeUpLeft);
                 }
                 // If the E key is clicked, shift up and to the right
                 if (e.getCode() == KeyCode.E) {
-                    GameLogic.mergeUpRight();
-                    updateGUI();
+                    performMove(GameLogic::mergeUpRight);
                 }
                 // If the X key is clicked, shift down and to the left
                 if (e.getCode() == KeyCode.X) {
-                    GameLogic.mergeDownLeft();
-                    updateGUI();
+                    performMove(GameLogic::mergeDownLeft);
                 }
                 // If the C key is clicked, shift down and to the right
                 if (e.getCode() == KeyCode.C) {
-                    GameLogic.mergeDownRight();
-                    updateGUI();
+                    performMove(GameLogic::mergeDownRight);
                 }
             } else {
                 showGameOverDialogBox();
@@ -430,37 +520,53 @@ public class SlideGameUI extends Application {
      */
     @SuppressWarnings("DuplicatedCode")
     public void start(Stage primaryStage) {
+        // Applies the optional --spawn=<rule> and --seed=<number> command line arguments to the new tiles
+        String spawn = getParameters().getNamed().get("spawn");
+        if (spawn != null) {
+            GameLogic.setSpawnRule(SpawnRule.parse(spawn));
+        }
+        String seed = getParameters().getNamed().get("seed");
+        if (seed != null) {
+            GameLogic.setRandomSeed(Long.parseLong(seed));
+        }
         showInstructionsDialogBox();
         showNumRowsInputDialogBox();
         showNumColumnsInputDialogBox();
         GameLogic.setLogicArray(new int[GameLogic.getNumRows()][GameLogic.getNumColumns()]);
         setButtonArray(new Button[GameLogic.getNumRows()][GameLogic.getNumColumns()]);
         GameLogic.initializeLogicArray();
+        // Uses the scrollable viewport instead of a button per cell when the board would not fit on the screen
+        if (BoardViewport.exceedsScreen(GameLogic.getNumRows(), GameLogic.getNumColumns())) {
+            setBoardViewport(new BoardViewport(GameLogic.getNumRows(), GameLogic.getNumColumns()));
+        }
         initializeGameBoardGUI();
-        // Stores and initializes the object that will be displayed on the stage
-        Scene scene = new Scene(getGameBoard());
+        // Stores and initializes the object that will be displayed on the stage, with the performance overlay on top
+        StackPane root = new StackPane(getBoardViewport() != null ? getBoardViewport() : getGameBoard());
+        Scene scene = new Scene(root);
+        setPerformanceOverlay(new PerformanceOverlay(scene));
+        root.getChildren().add(getPerformanceOverlay());
         scene.setOnKeyPressed(shiftWithKeyboard());
         primaryStage.setTitle("Slide Game");
         primaryStage.setScene(scene);
         primaryStage.show();
         // Transfers gadget focus back to the keyboard to allow for simultaneous button/keyboard inputs
-        getGameBoard().requestFocus();
+        if (getBoardViewport() != null) {
+            getBoardViewport().requestFocus();
+        } else {
+            getGameBoard().requestFocus();
+        }
     }
 
     /**
      * Launches the JavaFX application and takes in arguments representing the number of rows and columns
      *
      * @param args String with command line arguments. The first argument (index) will be used as the number of rows on the board
-     *             and the second will be used as the number on columns on the game board.
+     *             and the second will be used as the number on columns on the game board. The named arguments
+     *             --spawn=<rule> (see SpawnRule.parse()) and --seed=<number> set how new tiles are placed.
      */
     public static void main(String[] args) {
-        // Checks if there is command line input and launches the application with the appropriate row/column args for the game board
-        try {
-            Application.launch(args[0], args[1]);
-            // If no command line input, launch with no specific arguments and default (4 row x 4 column) board size will be used
-        } catch (ArrayIndexOutOfBoundsException e) {
-            Application.launch(args);
-        }
+        // Launches with every argument, so the named --spawn and --seed arguments reach start()
+        Application.launch(args);
     }
 
     /**
@@ -476,6 +582,14 @@ public class SlideGameUI extends Application {
         private static int[][] logicArray = new int[getNumRows()][getNumColumns()];
         // Stores if the random int can now be selected (first move is always true)
         private static boolean canSelectRandomInt = true;
+        // Stores the Random object used to locate random indices, shared by every call so it can be seeded
+        private static Random randomIndex = new Random();
+        // Stores how many new tiles are placed after a move and their values
+        private static SpawnRule spawnRule = SpawnRule.CLASSIC;
+        // Stores the number of random guesses in a row that may miss before the empty indices are listed instead
+        private static final int MAX_SPAWN_PROBES = 8;
+        // Stores the list of empty indices used once the board is too full to guess, reused between moves
+        private static int[] emptyIndices = new int[0];
 
         /**
          * Returns the logicArray
@@ -550,8 +664,8 @@ public class SlideGameUI extends Application {
         }
 
         /**
-         * Initializes the logicArray for a new slide game by setting all values to 0, except a random index
-         * that will have a 1
+         * Initializes the logicArray for a new slide game by setting all values to 0, except the random indices
+         * that get new tiles (a single 1 with the classic spawnRule)
          */
         public static void initializeLogicArray() {
             // Loops through the logicArray and assigns each index an int value of 0
@@ -560,7 +674,7 @@ public class SlideGameUI extends Application {
                     getLogicArray()[i][j] = 0;
                 }
             }
-            selectRandomInt();
+            spawnTiles();
             displayGameBoard();
         }
 
@@ -568,21 +682,94 @@ public class SlideGameUI extends Application {
          * Selects a random index from the logicArray to change to 1
          */
         public static void selectRandomInt() {
-            // Initializes and stores a new Random object that is used to locate random indices
-            Random randomIndex = new Random();
-            // Stores a random integer index for a row in the logicArray
-            int randomRow;
-            // Stores a random integer index for a column in the logicArray
-            int randomColumn;
-            /* Continually assigns random values to randomRow and randomColumn until both the indices point to an
-            index in the logicArray where there is a 0 (empty) */
-            do {
-                randomRow = randomIndex.nextInt(getLogicArray().length);
-                randomColumn = randomIndex.nextInt(getLogicArray()[0].length);
-            }
-            while (getLogicArray()[randomRow][randomColumn] != 0);
-            // Once an empty (0) index is found, assign 1 to the index
-            getLogicArray()[randomRow][randomColumn] = 1;
+            placeTiles(1, SpawnRule.CLASSIC);
+        }
+
+        /**
+         * Places the new tiles that the spawnRule asks for on distinct random empty indices of the logicArray
+         *
+         * @return The number of tiles placed, fewer than the rule asks for if the board runs out of empty indices
+         */
+        public static int spawnTiles() {
+            return placeTiles(getSpawnRule().getTileCount(getNumRows() * getNumColumns()), getSpawnRule());
+        }
+
+        /**
+         * Places tiles on distinct random empty indices, each empty index being equally likely every time. While the
+         * board is mostly empty, random indices are tried until an empty one is hit, which takes a few tries per tile.
+         * Once too many tries in a row miss, the empty indices are listed in one pass and the remaining tiles are drawn
+         * from the list without replacement.
+         *
+         * @param tiles The number of tiles to place
+         * @param rule  The SpawnRule that chooses each tile's value
+         * @return The number of tiles placed
+         */
+        private static int placeTiles(int tiles, SpawnRule rule) {
+            int[][] array = getLogicArray();
+            int rows = array.length;
+            int columns = array[0].length;
+            int placed = 0;
+            // Guesses random indices, giving up after MAX_SPAWN_PROBES misses for one tile
+            int misses = 0;
+            while (placed < tiles && misses < MAX_SPAWN_PROBES) {
+                int index = randomIndex.nextInt(rows * columns);
+                if (array[index / columns][index % columns] == 0) {
+                    array[index / columns][index % columns] = rule.nextValue(randomIndex);
+                    placed++;
+                    misses = 0;
+                } else {
+                    misses++;
+                }
+            }
+            if (placed == tiles) {
+                return placed;
+            }
+            // Lists the empty indices, then moves a random one to the front of the unused part of the list per tile
+            if (emptyIndices.length < rows * columns) {
+                emptyIndices = new int[rows * columns];
+            }
+            int emptyCount = 0;
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    if (array[i][j] == 0) {
+                        emptyIndices[emptyCount++] = i * columns + j;
+                    }
+                }
+            }
+            for (int t = 0; placed < tiles && t < emptyCount; t++, placed++) {
+                int pick = t + randomIndex.nextInt(emptyCount - t);
+                int index = emptyIndices[pick];
+                emptyIndices[pick] = emptyIndices[t];
+                array[index / columns][index % columns] = rule.nextValue(randomIndex);
+            }
+            return placed;
+        }
+
+        /**
+         * Seeds the random generator that places new tiles, so that games can be replayed
+         *
+         * @param seed The seed for the random generator
+         */
+        public static void setRandomSeed(long seed) {
+            randomIndex = new Random(seed);
+        }
+
+        /**
+         * Returns the spawnRule
+         *
+         * @return The SpawnRule that decides how many new tiles are placed after a move and their values
+         */
+        public static SpawnRule getSpawnRule() {
+            return spawnRule;
+        }
+
+        /**
+         * Sets the spawnRule
+         *
+         * @param rule The SpawnRule that decides how many new tiles are placed after a move and their values
+         */
+        public static void setSpawnRule(SpawnRule rule) {
+            spawnRule = rule;
         }
 
         /**
@@ -0,0 +1,169 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * SpawnRule.java describes how new tiles are placed after a move: how many tiles, and which values they get. The
+ * number of tiles is either fixed or proportional to the area of the board, so large boards fill up at a pace that
+ * suits their size. Each tile's value is drawn from a weighted list of powers of two.
+ *
+ * <p>No rule makes a game on a very large board end by itself: the game is only over when the board is full and no
+ * two neighbouring tiles are equal, which almost never happens on a big board. Simulations and benchmarks should
+ * limit the number of moves per game, as LoadGenerator, TrainingDataWriter and HeuristicPolicy do.
+ *
+ * <p>A rule can be written as text, which is how it is given on the command line and over the GameServer protocol:
+ * the tile count, optionally followed by "@" and the values with their weights. For example, "1" is the classic rule
+ * (one tile with the value 1), "3" places three tiles, "1/500" places one tile per 500 cells, and "1/500@1:9,2:1"
+ * does the same with one tile in ten getting the value 2.
+ */
+public final class SpawnRule {
+    // Stores the classic rule of SlideGameUI: one new tile with the value 1 per move
+    public static final SpawnRule CLASSIC = new SpawnRule(1, 0, new int[]{1}, new double[]{1});
+
+    // Stores the fixed number of tiles per move, or 0 if the count is proportional to the area
+    private final int fixedTiles;
+    // Stores the number of cells per tile when the count is proportional to the area, or 0 if it is fixed
+    private final int cellsPerTile;
+    // Stores the values new tiles can have
+    private final int[] values;
+    // Stores the running totals of the weights of the values, so a value can be found with a binary search
+    private final double[] cumulativeWeights;
+
+    /**
+     * Creates a rule. Use fixed(), perArea() and withValues() to create one.
+     *
+     * @param fixedTiles   The fixed number of tiles, or 0
+     * @param cellsPerTile The number of cells per tile, or 0
+     * @param values       The values new tiles can have
+     * @param weights      The weight of each value
+     */
+    private SpawnRule(int fixedTiles, int cellsPerTile, int[] values, double[] weights) {
+        if (values.length == 0 || values.length != weights.length) {
+            throw new IllegalArgumentException("Every value needs a weight");
+        }
+        this.fixedTiles = fixedTiles;
+        this.cellsPerTile = cellsPerTile;
+        this.values = values.clone();
+        cumulativeWeights = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] <= 0 || Integer.bitCount(values[i]) != 1) {
+                throw new IllegalArgumentException("Tile values must be powers of two: " + values[i]);
+            }
+            if (!(weights[i] > 0)) {
+                throw new IllegalArgumentException("Weights must be positive: " + weights[i]);
+            }
+            total += weights[i];
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Returns a rule that places a fixed number of tiles with the value 1 per move
+     *
+     * @param tiles The number of tiles, at least 1
+     * @return A new SpawnRule
+     */
+    public static SpawnRule fixed(int tiles) {
+        if (tiles < 1) {
+            throw new IllegalArgumentException("At least one tile must be placed");
+        }
+        return new SpawnRule(tiles, 0, new int[]{1}, new double[]{1});
+    }
+
+    /**
+     * Returns a rule that places one tile with the value 1 per the given number of cells, and at least one tile
+     *
+     * @param cellsPerTile The number of cells per tile, at least 1
+     * @return A new SpawnRule
+     */
+    public static SpawnRule perArea(int cellsPerTile) {
+        if (cellsPerTile < 1) {
+            throw new IllegalArgumentException("There must be at least one cell per tile");
+        }
+        return new SpawnRule(0, cellsPerTile, new int[]{1}, new double[]{1});
+    }
+
+    /**
+     * Returns a rule with the same tile count as this one, whose tiles get the given values
+     *
+     * @param values  The values new tiles can have, each a power of two
+     * @param weights The weight of each value; they do not need to add up to 1
+     * @return A new SpawnRule
+     */
+    public SpawnRule withValues(int[] values, double[] weights) {
+        return new SpawnRule(fixedTiles, cellsPerTile, values, weights);
+    }
+
+    /**
+     * Parses a rule written as text, such as "1", "4", "1/500" or "1/500@1:9,2:1"
+     *
+     * @param text The rule as text
+     * @return A new SpawnRule
+     */
+    public static SpawnRule parse(String text) {
+        try {
+            int at = text.indexOf('@');
+            String count = at < 0 ? text : text.substring(0, at);
+            SpawnRule rule = count.startsWith("1/") ? perArea(Integer.parseInt(count.substring(2)))
+                    : fixed(Integer.parseInt(count));
+            if (at < 0) {
+                return rule;
+            }
+            String[] entries = text.substring(at + 1).split(",");
+            int[] values = new int[entries.length];
+            double[] weights = new double[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                String[] pair = entries[i].split(":");
+                values[i] = Integer.parseInt(pair[0]);
+                weights[i] = pair.length > 1 ? Double.parseDouble(pair[1]) : 1;
+            }
+            return rule.withValues(values, weights);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid spawn rule: " + text, e);
+        }
+    }
+
+    /**
+     * Returns the number of tiles to place after a move on a board of the given size
+     *
+     * @param cells The number of cells on the board
+     * @return The number of tiles, which may be more than the number of empty cells
+     */
+    public int getTileCount(int cells) {
+        return fixedTiles > 0 ? fixedTiles : Math.max(1, cells / cellsPerTile);
+    }
+
+    /**
+     * Draws the value of a new tile. When there is only one value, no random number is used.
+     *
+     * @param random The random generator of the game
+     * @return The value of the tile
+     */
+    public int nextValue(Random random) {
+        if (values.length == 1) {
+            return values[0];
+        }
+        double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        int i = Arrays.binarySearch(cumulativeWeights, target);
+        // A miss returns -(insertion point) - 1, and the insertion point is the first total above the target
+        i = i < 0 ? -i - 1 : i + 1;
+        return values[Math.min(i, values.length - 1)];
+    }
+
+    /**
+     * Returns the rule as text that parse() accepts
+     *
+     * @return A String such as "1/500@1:9.0,2:1.0"
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(fixedTiles > 0 ? String.valueOf(fixedTiles) : "1/" + cellsPerTile);
+        if (values.length > 1 || values[0] != 1) {
+            for (int i = 0; i < values.length; i++) {
+                double weight = cumulativeWeights[i] - (i == 0 ? 0 : cumulativeWeights[i - 1]);
+                text.append(i == 0 ? "@" : ",").append(values[i]).append(':').append(weight);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * TrainingColumn.java lists the columns of the training data written by TrainingDataWriter. The columns belong to one
+ * of two tables: the TURNS table has a row for every move played, and the GAMES table has a row for every game, with
+ * the outcome label, written when the game ends. The two tables are joined on the game id.
+ */
+public enum TrainingColumn {
+    // Stores the game the move was played in
+    TURN_GAME_ID(TrainingColumn.TURNS, 1, 4),
+    // Stores the number of moves played in the game before this one
+    TURN_NUMBER(TrainingColumn.TURNS, 2, 4),
+    // Stores the board before the move, one exponent code per cell in row order (see GameEngine.toExponent())
+    BOARD(TrainingColumn.TURNS, 3, 0),
+    // Stores the code of the chosen direction (see Direction.getCode())
+    DIRECTION(TrainingColumn.TURNS, 4, 1),
+    // Stores the score gained by the move
+    SCORE_DELTA(TrainingColumn.TURNS, 5, 4),
+    // Stores the id of the game
+    GAME_ID(TrainingColumn.GAMES, 16, 4),
+    // Stores the score at the end of the game
+    FINAL_SCORE(TrainingColumn.GAMES, 17, 8),
+    // Stores the exponent code of the largest tile at the end of the game
+    MAX_EXPONENT(TrainingColumn.GAMES, 18, 1),
+    // Stores the number of moves played in the game
+    TURN_COUNT(TrainingColumn.GAMES, 19, 4),
+    // Stores the outcome label of the game, OUTCOME_GAME_OVER or OUTCOME_TRUNCATED
+    OUTCOME(TrainingColumn.GAMES, 20, 1);
+
+    // Stores the table codes
+    public static final byte TURNS = 1;
+    public static final byte GAMES = 2;
+    // Stores the outcome labels
+    public static final byte OUTCOME_GAME_OVER = 0;
+    public static final byte OUTCOME_TRUNCATED = 1;
+
+    // Stores the table the column belongs to
+    private final byte table;
+    // Stores the code of the column in the file
+    private final byte id;
+    // Stores the number of bytes per row, or 0 for the BOARD column whose width depends on the board size
+    private final int width;
+
+    /**
+     * Creates a column.
+     *
+     * @param table The table the column belongs to
+     * @param id    The code of the column in the file
+     * @param width The number of bytes per row, or 0 if it depends on the board size
+     */
+    TrainingColumn(byte table, int id, int width) {
+        this.table = table;
+        this.id = (byte) id;
+        this.width = width;
+    }
+
+    /**
+     * Returns the table the column belongs to
+     *
+     * @return TURNS or GAMES
+     */
+    public byte getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the code of the column in the file
+     *
+     * @return A byte with the column code
+     */
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * Returns the number of bytes each row takes up in this column
+     *
+     * @param cells The number of cells on the board
+     * @return An int with the number of bytes per row
+     */
+    public int getWidth(int cells) {
+        return width == 0 ? cells : width;
+    }
+
+    /**
+     * Returns the column with the given code
+     *
+     * @param id A code returned by getId()
+     * @return The TrainingColumn with that code
+     * @throws IllegalArgumentException if no column has the code
+     */
+    public static TrainingColumn fromId(int id) {
+        for (TrainingColumn column : values()) {
+            if (column.id == id) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column code: " + id);
+    }
+}
@@ -0,0 +1,227 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * TrainingDataReader.java reads the files written by TrainingDataWriter one chunk at a time. Only the projected columns
+ * are decompressed; the bytes of the other columns are skipped without being inflated, so reading a single column
+ * costs little more than that column's share of the file.
+ */
+public class TrainingDataReader implements Closeable {
+    // Stores the stream the file is read from
+    private final DataInputStream in;
+    // Stores the number of rows and columns on the boards
+    private final int numRows, numColumns;
+    // Stores the columns to decompress
+    private final Set<TrainingColumn> projection;
+    // Stores the decompressed columns of the current chunk
+    private final Map<TrainingColumn, ByteBuffer> chunkColumns = new EnumMap<>(TrainingColumn.class);
+    // Stores the decompressor, reused for every column
+    private final Inflater inflater = new Inflater();
+    // Stores the compressed bytes of the column being read
+    private byte[] compressed = new byte[1024];
+    // Stores the table and number of rows of the current chunk
+    private byte chunkTable;
+    private int chunkRowCount;
+
+    /**
+     * Opens a file and reads its header.
+     *
+     * @param stream     The stream to read from, which is closed by close()
+     * @param projection The columns to decompress; none means all of them
+     * @throws IOException if the header is missing or from another version
+     */
+    public TrainingDataReader(InputStream stream, TrainingColumn... projection) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        if (in.readInt() != TrainingDataWriter.MAGIC) {
+            throw new IOException("Not a training data file");
+        }
+        short version = in.readShort();
+        if (version != TrainingDataWriter.VERSION) {
+            throw new IOException("Unsupported training data version: " + version);
+        }
+        numRows = in.readShort();
+        numColumns = in.readShort();
+        this.projection = projection.length == 0 ? EnumSet.allOf(TrainingColumn.class) : EnumSet.copyOf(Arrays.asList(projection));
+    }
+
+    /**
+     * Returns the number of rows on the boards
+     *
+     * @return An int with the number of rows
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Returns the number of columns on the boards
+     *
+     * @return An int with the number of columns
+     */
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    /**
+     * Reads the next chunk, decompressing only the projected columns
+     *
+     * @return true if a chunk was read, false at the end of the file
+     * @throws IOException if the file is truncated or corrupt
+     */
+    public boolean nextChunk() throws IOException {
+        chunkColumns.clear();
+        byte table = in.readByte();
+        if (table == TrainingDataWriter.END) {
+            return false;
+        }
+        chunkTable = table;
+        chunkRowCount = in.readInt();
+        int columnCount = in.readUnsignedByte();
+        for (int i = 0; i < columnCount; i++) {
+            TrainingColumn column = TrainingColumn.fromId(in.readByte());
+            int rawLength = in.readInt();
+            int compressedLength = in.readInt();
+            if (!projection.contains(column)) {
+                in.skipNBytes(compressedLength);
+                continue;
+            }
+            chunkColumns.put(column, inflate(rawLength, compressedLength));
+        }
+        // Undoes the XOR against the previous board that the writer applied to the BOARD column
+        ByteBuffer boards = chunkColumns.get(TrainingColumn.BOARD);
+        if (boards != null) {
+            byte[] bytes = boards.array();
+            int cells = numRows * numColumns;
+            for (int i = cells; i < boards.limit(); i++) {
+                bytes[i] ^= bytes[i - cells];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads and decompresses one column
+     *
+     * @param rawLength        The number of bytes after decompression
+     * @param compressedLength The number of compressed bytes in the file
+     * @return A ByteBuffer with the decompressed column
+     * @throws IOException if the column is truncated or corrupt
+     */
+    private ByteBuffer inflate(int rawLength, int compressedLength) throws IOException {
+        if (compressed.length < compressedLength) {
+            compressed = new byte[compressedLength];
+        }
+        in.readFully(compressed, 0, compressedLength);
+        byte[] raw = new byte[rawLength];
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawLength) {
+                throw new IOException("Column is shorter than its recorded length");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column", e);
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    /**
+     * Returns the table of the current chunk
+     *
+     * @return TrainingColumn.TURNS or TrainingColumn.GAMES
+     */
+    public byte getChunkTable() {
+        return chunkTable;
+    }
+
+    /**
+     * Returns the number of rows in the current chunk
+     *
+     * @return An int with the number of rows
+     */
+    public int getChunkRowCount() {
+        return chunkRowCount;
+    }
+
+    /**
+     * Returns a column of the current chunk
+     *
+     * @param column The TrainingColumn to return
+     * @return A ByteBuffer positioned at the first row, or null if the column is not projected or not in this chunk
+     */
+    public ByteBuffer getColumn(TrainingColumn column) {
+        ByteBuffer buffer = chunkColumns.get(column);
+        return buffer == null ? null : buffer.duplicate();
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the stream cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    /**
+     * Prints a summary of a file, reading only the columns needed for it
+     *
+     * @param args The file to read
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java TrainingDataReader <file>");
+            return;
+        }
+        // Stores the number of moves per direction, and the number of games, total score and finished games
+        long[] directionCounts = new long[Direction.values().length];
+        long games = 0, totalScore = 0, finished = 0;
+        try (TrainingDataReader reader = new TrainingDataReader(new FileInputStream(args[0]),
+                TrainingColumn.DIRECTION, TrainingColumn.FINAL_SCORE, TrainingColumn.OUTCOME)) {
+            while (reader.nextChunk()) {
+                if (reader.getChunkTable() == TrainingColumn.TURNS) {
+                    ByteBuffer directions = reader.getColumn(TrainingColumn.DIRECTION);
+                    while (directions.hasRemaining()) {
+                        directionCounts[directions.get()]++;
+                    }
+                } else {
+                    ByteBuffer scores = reader.getColumn(TrainingColumn.FINAL_SCORE);
+                    ByteBuffer outcomes = reader.getColumn(TrainingColumn.OUTCOME);
+                    for (int i = 0; i < reader.getChunkRowCount(); i++) {
+                        games++;
+                        totalScore += scores.getLong();
+                        finished += outcomes.get() == TrainingColumn.OUTCOME_GAME_OVER ? 1 : 0;
+                    }
+                }
+            }
+            System.out.println("board: " + reader.getNumRows() + " x " + reader.getNumColumns());
+        }
+        System.out.println("games: " + games + " (" + finished + " finished), average score: " + (games == 0 ? 0 : totalScore / games));
+        for (Direction direction : Direction.values()) {
+            System.out.println(direction + ": " + directionCounts[direction.getCode()] + " moves");
+        }
+    }
+}
@@ -0,0 +1,297 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * TrainingDataWriter.java streams the moves of games into a chunked, columnar binary file for training move-evaluation
+ * models. Rows are collected into a fixed-size buffer per column and written out as a chunk whenever the buffer is
+ * full, so memory use stays the same however many games are recorded and a game never has to be held in memory.
+ *
+ * <p>File layout (big-endian):
+ * <ul>
+ *     <li>Header: int MAGIC, short VERSION, short rows, short columns.</li>
+ *     <li>Chunks: byte table (TrainingColumn.TURNS or GAMES), int row count, byte column count, then for each column:
+ *     byte column code, int raw length, int compressed length and the column's bytes compressed with Deflate.</li>
+ *     <li>End: byte 0.</li>
+ * </ul>
+ * Each column is compressed on its own. The BOARD column stores each board XORed with the previous board in the same
+ * chunk, so the cells that did not change become zeros and compress to almost nothing.
+ */
+public class TrainingDataWriter implements Closeable {
+    // Stores the first four bytes of every file ("S2GT")
+    public static final int MAGIC = 0x53324754;
+    // Stores the version of the file layout
+    public static final short VERSION = 1;
+    // Stores the byte that marks the end of the file
+    public static final byte END = 0;
+    // Stores the number of rows per chunk used when none is given
+    public static final int DEFAULT_CHUNK_ROWS = 4096;
+    // Stores the largest number of BOARD bytes buffered per chunk, which lowers the chunk size for large boards
+    public static final int MAX_CHUNK_BOARD_BYTES = 1 << 22;
+
+    // Stores the stream the file is written to
+    private final DataOutputStream out;
+    // Stores the number of rows and columns on the boards
+    private final int numRows, numColumns;
+    // Stores the number of rows per chunk
+    private final int chunkRows;
+    // Stores the buffer for each column of each table
+    private final Map<TrainingColumn, ByteBuffer> buffers = new EnumMap<>(TrainingColumn.class);
+    // Stores the number of rows buffered in each table
+    private int turnRows, gameRows;
+    // Stores the compressor, reused for every column
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    // Stores the bytes of a compressed column
+    private byte[] compressed = new byte[1024];
+
+    /**
+     * Creates a writer and writes the file header.
+     *
+     * @param stream    The stream to write to, which is closed by close()
+     * @param rows      The number of rows on the boards
+     * @param columns   The number of columns on the boards
+     * @param chunkRows The number of rows buffered per chunk, lowered if the boards would take up more than
+     *                  MAX_CHUNK_BOARD_BYTES
+     * @throws IOException if the header cannot be written
+     */
+    public TrainingDataWriter(OutputStream stream, int rows, int columns, int chunkRows) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        numRows = rows;
+        numColumns = columns;
+        this.chunkRows = Math.max(1, Math.min(chunkRows, MAX_CHUNK_BOARD_BYTES / (rows * columns)));
+        for (TrainingColumn column : TrainingColumn.values()) {
+            buffers.put(column, ByteBuffer.allocate(this.chunkRows * column.getWidth(rows * columns)));
+        }
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(rows);
+        out.writeShort(columns);
+    }
+
+    /**
+     * Records a move: the board before it, the direction and the score it gained
+     *
+     * @param gameId     The id of the game
+     * @param turn       The number of moves played in the game before this one
+     * @param board      The tile values of the board before the move
+     * @param direction  The Direction chosen
+     * @param scoreDelta The score gained by the move
+     * @throws IOException if a full chunk cannot be written
+     */
+    public void recordTurn(int gameId, int turn, int[][] board, Direction direction, int scoreDelta) throws IOException {
+        ByteBuffer boards = buffers.get(TrainingColumn.BOARD);
+        for (int[] row : board) {
+            for (int value : row) {
+                boards.put((byte) GameEngine.toExponent(value));
+            }
+        }
+        finishTurn(gameId, turn, direction, scoreDelta);
+    }
+
+    /**
+     * Records the board of an engine, plays the move on it and records the direction and the score it gained
+     *
+     * @param gameId    The id of the game
+     * @param engine    The GameEngine the game is played on
+     * @param direction The Direction to move in
+     * @return The score gained by the move
+     * @throws IOException if a full chunk cannot be written
+     */
+    public int recordMove(int gameId, GameEngine engine, Direction direction) throws IOException {
+        // Copies the board straight into the column buffer before the move changes it
+        ByteBuffer boards = buffers.get(TrainingColumn.BOARD);
+        for (int i = 0; i < numRows * numColumns; i++) {
+            boards.put((byte) GameEngine.toExponent(engine.getCell(i)));
+        }
+        int turn = engine.getMoveCount();
+        int scoreDelta = engine.move(direction);
+        finishTurn(gameId, turn, direction, scoreDelta);
+        return scoreDelta;
+    }
+
+    /**
+     * Writes the rest of a TURNS row whose board has already been buffered, and the chunk if it is full
+     *
+     * @param gameId     The id of the game
+     * @param turn       The number of moves played in the game before this one
+     * @param direction  The Direction chosen
+     * @param scoreDelta The score gained by the move
+     * @throws IOException if a full chunk cannot be written
+     */
+    private void finishTurn(int gameId, int turn, Direction direction, int scoreDelta) throws IOException {
+        buffers.get(TrainingColumn.TURN_GAME_ID).putInt(gameId);
+        buffers.get(TrainingColumn.TURN_NUMBER).putInt(turn);
+        buffers.get(TrainingColumn.DIRECTION).put(direction.getCode());
+        buffers.get(TrainingColumn.SCORE_DELTA).putInt(scoreDelta);
+        if (++turnRows == chunkRows) {
+            flushTable(TrainingColumn.TURNS);
+        }
+    }
+
+    /**
+     * Records the end of a game and its outcome label
+     *
+     * @param gameId      The id of the game
+     * @param finalScore  The score at the end of the game
+     * @param maxExponent The exponent code of the largest tile
+     * @param turns       The number of moves played
+     * @param outcome     TrainingColumn.OUTCOME_GAME_OVER or TrainingColumn.OUTCOME_TRUNCATED
+     * @throws IOException if a full chunk cannot be written
+     */
+    public void recordGame(int gameId, long finalScore, int maxExponent, int turns, byte outcome) throws IOException {
+        buffers.get(TrainingColumn.GAME_ID).putInt(gameId);
+        buffers.get(TrainingColumn.FINAL_SCORE).putLong(finalScore);
+        buffers.get(TrainingColumn.MAX_EXPONENT).put((byte) maxExponent);
+        buffers.get(TrainingColumn.TURN_COUNT).putInt(turns);
+        buffers.get(TrainingColumn.OUTCOME).put(outcome);
+        if (++gameRows == chunkRows) {
+            flushTable(TrainingColumn.GAMES);
+        }
+    }
+
+    /**
+     * Records the end of a game played on an engine
+     *
+     * @param gameId The id of the game
+     * @param engine The GameEngine the game was played on
+     * @throws IOException if a full chunk cannot be written
+     */
+    public void recordGame(int gameId, GameEngine engine) throws IOException {
+        int maxExponent = 0;
+        for (int i = 0; i < numRows * numColumns; i++) {
+            maxExponent = Math.max(maxExponent, GameEngine.toExponent(engine.getCell(i)));
+        }
+        recordGame(gameId, engine.getScore(), maxExponent, engine.getMoveCount(),
+                engine.isGameOver() ? TrainingColumn.OUTCOME_GAME_OVER : TrainingColumn.OUTCOME_TRUNCATED);
+    }
+
+    /**
+     * Writes the buffered rows of a table as a chunk and empties its buffers
+     *
+     * @param table TrainingColumn.TURNS or TrainingColumn.GAMES
+     * @throws IOException if the chunk cannot be written
+     */
+    private void flushTable(byte table) throws IOException {
+        int rowCount = table == TrainingColumn.TURNS ? turnRows : gameRows;
+        if (rowCount == 0) {
+            return;
+        }
+        int columnCount = 0;
+        for (TrainingColumn column : TrainingColumn.values()) {
+            if (column.getTable() == table) {
+                columnCount++;
+            }
+        }
+        out.writeByte(table);
+        out.writeInt(rowCount);
+        out.writeByte(columnCount);
+        for (TrainingColumn column : TrainingColumn.values()) {
+            if (column.getTable() != table) {
+                continue;
+            }
+            ByteBuffer buffer = buffers.get(column);
+            if (column == TrainingColumn.BOARD) {
+                xorWithPreviousBoard(buffer.array(), buffer.position());
+            }
+            writeColumn(column, buffer.array(), buffer.position());
+            buffer.clear();
+        }
+        if (table == TrainingColumn.TURNS) {
+            turnRows = 0;
+        } else {
+            gameRows = 0;
+        }
+    }
+
+    /**
+     * Replaces every board but the first with its XOR against the one before it, working from the end backwards
+     *
+     * @param bytes  The BOARD column
+     * @param length The number of bytes in use
+     */
+    private void xorWithPreviousBoard(byte[] bytes, int length) {
+        int cells = numRows * numColumns;
+        for (int i = length - 1; i >= cells; i--) {
+            bytes[i] ^= bytes[i - cells];
+        }
+    }
+
+    /**
+     * Compresses and writes one column of a chunk
+     *
+     * @param column The TrainingColumn being written
+     * @param bytes  The raw bytes of the column
+     * @param length The number of bytes in use
+     * @throws IOException if the column cannot be written
+     */
+    private void writeColumn(TrainingColumn column, byte[] bytes, int length) throws IOException {
+        deflater.reset();
+        deflater.setInput(bytes, 0, length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        out.writeByte(column.getId());
+        out.writeInt(length);
+        out.writeInt(compressedLength);
+        out.write(compressed, 0, compressedLength);
+    }
+
+    /**
+     * Writes the rows still buffered and the end marker, and closes the stream.
+     *
+     * @throws IOException if the file cannot be finished
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushTable(TrainingColumn.TURNS);
+            flushTable(TrainingColumn.GAMES);
+            out.writeByte(END);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    /**
+     * Plays random games and records them, as a quick way to produce a file
+     *
+     * @param args The output file, the number of games, rows, columns, seed and spawn rule, all but the file optional
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java TrainingDataWriter <file> [games] [rows] [columns] [seed] [spawnRule]");
+            return;
+        }
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int columns = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+        SpawnRule spawnRule = args.length > 5 ? SpawnRule.parse(args[5]) : SpawnRule.CLASSIC;
+        Random random = new Random(seed);
+        try (TrainingDataWriter writer = new TrainingDataWriter(new FileOutputStream(args[0]), rows, columns, DEFAULT_CHUNK_ROWS)) {
+            for (int game = 0; game < games; game++) {
+                GameEngine engine = new GameEngine(rows, columns, random.nextLong(), spawnRule);
+                while (!engine.isGameOver() && engine.getMoveCount() < 100_000) {
+                    writer.recordMove(game, engine, Direction.fromCode(random.nextInt(Direction.values().length)));
+                }
+                writer.recordGame(game, engine);
+            }
+        }
+    }
+}